@@ -16,6 +16,9 @@
  *****************************************************************************/
 package net.rapi;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 
 /**
  * A binding is an service offering to all peers with access to a layer.
@@ -40,6 +43,29 @@ public interface Binding extends EventSource
 	 */
 	public Connection getIncomingConnection();
 	
+	/**
+	 * Requests the next new incoming connection for a binding.
+	 * In contrast to {@link #getIncomingConnection()}, the method blocks
+	 * until a connection is available, the timeout expires or the
+	 * binding is closed.
+	 * 
+	 * @param timeout Maximum time to wait
+	 * @param unit Unit of the timeout parameter
+	 * @return Reference to a new incoming connection or null if none arrived in time
+	 * @throws InterruptedException If thread was interrupted while waiting
+	 */
+	public Connection accept(long timeout, TimeUnit unit) throws InterruptedException;
+	
+	/**
+	 * Removes up to {@code maxElements} new incoming connections and adds them
+	 * to a collection. The method does not block.
+	 * 
+	 * @param sink Collection receiving the connections in the order of their arrival
+	 * @param maxElements Maximum number of connections to remove
+	 * @return Number of connections added to the sink
+	 */
+	public int drainIncomingConnections(Collection<? super Connection> sink, int maxElements);
+	
 	/**
 	 * @return Number of new connections waiting in queue
 	 */
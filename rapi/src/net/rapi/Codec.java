@@ -0,0 +1,67 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Converts data objects exchanged via {@link Connection}s to bytes and
+ * back. Layers crossing a real wire use the codec of a connection instead
+ * of Java serialization (see {@link Connection#setCodec}).
+ * 
+ * A codec has to be stateless and thread-safe, since it might be shared by
+ * multiple connections.
+ */
+public interface Codec
+{
+	/**
+	 * @param data Data object ({@code null} allowed)
+	 * @return If the codec supports the type of the data object
+	 */
+	public boolean canEncode(Object data);
+	
+	/**
+	 * Calculates the size of the encoded data without encoding it. Thus,
+	 * buffers can be allocated with the correct size in advance.
+	 * 
+	 * @param data Data object ({@code null} allowed)
+	 * @return Number of bytes required for encoding the data
+	 * @throws CodecException If type of data is not supported
+	 */
+	public int getEncodedSize(Object data) throws CodecException;
+	
+	/**
+	 * Encodes a data object at the current position of a buffer. The
+	 * position is moved behind the encoded data.
+	 * 
+	 * @param data Data object ({@code null} allowed)
+	 * @param buffer Buffer with at least {@link #getEncodedSize} remaining bytes
+	 * @throws CodecException If type of data is not supported or the buffer is too small
+	 */
+	public void encode(Object data, ByteBuffer buffer) throws CodecException;
+	
+	/**
+	 * Decodes a data object starting at the current position of a buffer.
+	 * The position is moved behind the decoded data.
+	 * 
+	 * @param buffer Buffer containing the encoded data
+	 * @return Decoded data object (might be {@code null})
+	 * @throws CodecException If data is malformed or truncated
+	 */
+	public Object decode(ByteBuffer buffer) throws CodecException;
+}
@@ -0,0 +1,45 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi;
+
+/**
+ * Data can not be encoded or decoded by a {@link Codec}.
+ */
+public class CodecException extends NetworkException
+{
+	private static final long serialVersionUID = -3361204958627170374L;
+
+	public CodecException(String errorMsg)
+	{
+		super(errorMsg);
+	}
+	
+	public CodecException(String errorMsg, Throwable cause)
+	{
+		super(errorMsg, cause);
+	}
+
+	public CodecException(Object object, String errorMsg)
+	{
+		super(object, errorMsg);
+	}
+	
+	public CodecException(Object object, String errorMsg, Throwable cause)
+	{
+		super(object, errorMsg, cause);
+	}
+}
@@ -20,7 +20,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -87,6 +91,48 @@ public interface Connection extends EventSource
 	 */
 	public void write(Serializable data) throws NetworkException;
 	
+	/**
+	 * Sends multiple data objects through the layer to all peers of the
+	 * connection. The delimiting of the data objects is preserved. The
+	 * result is equal to calling {@link #write(Serializable)} for each element
+	 * of the list in its order. However, implementations are able to
+	 * coalesce the data objects (e.g. in a single lower layer frame).
+	 * Blocking behavior is equal to {@link #write(Serializable)}.
+	 * 
+	 * @param data List of data objects to send
+	 * @throws NetworkException On error during sending (e.g. connection is closed)
+	 */
+	public void writeBatch(List<? extends Serializable> data) throws NetworkException;
+	
+	/**
+	 * Sends the remaining bytes of a buffer through the layer to all peers
+	 * of the connection. In contrast to {@link #write(Serializable)}, the
+	 * ownership of the buffer is handed over to the connection. The caller
+	 * MUST NOT modify the buffer or its content after the call. This enables
+	 * implementations to avoid a defensive copy of the data.
+	 * 
+	 * Read-only buffers are an exception: they are just borrowed for the
+	 * duration of the call. The caller may reuse them afterwards and the
+	 * connection has to copy their content if it is needed after the call.
+	 * Blocking behavior is equal to {@link #write(Serializable)}.
+	 * 
+	 * @param data Buffer with data to send; its position and limit mark the data
+	 * @throws NetworkException On error during sending (e.g. connection is closed)
+	 */
+	public void write(ByteBuffer data) throws NetworkException;
+	
+	/**
+	 * Gathering version of {@link #write(ByteBuffer)}. The remaining bytes of
+	 * all buffers are send as one chunk of data in the order of the array.
+	 * The ownership of all buffers is handed over to the connection, except
+	 * for read-only buffers, which are just borrowed for the call (see
+	 * {@link #write(ByteBuffer)}).
+	 * 
+	 * @param data Buffers with data to send
+	 * @throws NetworkException On error during sending (e.g. connection is closed)
+	 */
+	public void write(ByteBuffer[] data) throws NetworkException;
+	
 	/**
 	 * Called by application in order to get new data received by this
 	 * socket. This method does not block and returns {@code null} if
@@ -97,6 +143,50 @@ public interface Connection extends EventSource
 	 */
 	public Object read() throws NetworkException;
 	
+	/**
+	 * Called by application in order to get new data received by this
+	 * socket. In contrast to {@link #read()}, the method blocks until data
+	 * is available or the timeout expires.
+	 * 
+	 * @param timeout Maximum time to wait
+	 * @param unit Unit of the timeout parameter
+	 * @return Received data object or {@code null} if timeout expired
+	 * @throws NetworkException On error (e.g. connection is closed)
+	 * @throws InterruptedException If thread was interrupted while waiting
+	 */
+	public Object read(long timeout, TimeUnit unit) throws NetworkException, InterruptedException;
+	
+	/**
+	 * Called by application in order to get new data received by this
+	 * socket. The method blocks until data is available.
+	 * 
+	 * @return Received data object ({@code != null})
+	 * @throws NetworkException On error (e.g. connection is closed)
+	 * @throws InterruptedException If thread was interrupted while waiting
+	 */
+	public Object take() throws NetworkException, InterruptedException;
+	
+	/**
+	 * Removes all available data objects and adds them to a collection.
+	 * The method does not block.
+	 * 
+	 * @param sink Collection receiving the data objects in the order of their reception
+	 * @return Number of data objects added to the sink
+	 * @throws NetworkException On error (e.g. connection is closed)
+	 */
+	public int drainTo(Collection<? super Object> sink) throws NetworkException;
+	
+	/**
+	 * Removes up to {@code maxElements} available data objects and adds them to
+	 * a collection. The method does not block.
+	 * 
+	 * @param sink Collection receiving the data objects in the order of their reception
+	 * @param maxElements Maximum number of data objects to remove
+	 * @return Number of data objects added to the sink
+	 * @throws NetworkException On error (e.g. connection is closed)
+	 */
+	public int drainTo(Collection<? super Object> sink, int maxElements) throws NetworkException;
+	
 	/**
 	 * @return Number of available bytes (if stream is used) or objects (if read is used)
 	 */
@@ -121,6 +211,23 @@ public interface Connection extends EventSource
 	 */
 	public InputStream getInputStream() throws IOException;
 	
+	/**
+	 * Selects the codec used for converting data objects to bytes. It is
+	 * used by layers transmitting the data objects via a wire and by the
+	 * input stream (see {@link #getInputStream()}). With a codec, the input
+	 * stream delivers all data objects, including byte arrays, as codec
+	 * frames. Without a codec, it delivers byte arrays as they are and the
+	 * UTF-8 encoded string representation of other objects.
+	 * 
+	 * @param codec Codec for the data objects ({@code != null})
+	 */
+	public void setCodec(Codec codec);
+	
+	/**
+	 * @return Codec for the data objects of this connection; {@code null} if none was selected
+	 */
+	public Codec getCodec();
+	
 	/**
 	 * Terminates the possibility to exchange data via this connection.
 	 * If the connection is closed at the other peers depend on the
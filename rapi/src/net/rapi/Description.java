@@ -16,9 +16,15 @@
  *****************************************************************************/
 package net.rapi;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.rapi.properties.NonFunctionalRequirementsProperty;
 import net.rapi.properties.OrderedProperty;
@@ -26,9 +32,28 @@ import net.rapi.properties.Property;
 import net.rapi.properties.PropertyException;
 
 
+/**
+ * Set of properties describing requirements or capabilities.
+ * A description contains at most one property per property class.
+ * 
+ * Internally, each property class gets a stable slot number. A description
+ * stores its properties in an array indexed by that slot number. Thus,
+ * the lookup of properties by class does not require a search. The
+ * iteration order is given by the slot numbers and not by the order of
+ * insertion.
+ */
 public class Description implements Iterable<Property>, Serializable
 {
 	private static final long serialVersionUID = -8096508525836787147L;
+	
+	/**
+	 * Serialized form is the list of properties, which is independent
+	 * from the slot numbers of a JVM.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("mProperties", LinkedList.class)
+	};
+	
 	private static final Iterator<Property> nullIterator = new Iterator<Property>() {
 		@Override
 		public boolean hasNext()
@@ -50,12 +75,17 @@ public class Description implements Iterable<Property>, Serializable
 
 	public Description()
 	{
-		mProperties = null;
+		mSlots = null;
+		mSize = 0;
 	}
 	
 	public Description(Description original)
 	{
-		mProperties = new LinkedList<Property>(original.mProperties);
+		if(original.mSlots != null) {
+			mSlots = original.mSlots.clone();
+		}
+		mSize = original.mSize;
+		mHash = original.mHash;
 	}
 	
 	/**
@@ -76,61 +106,77 @@ public class Description implements Iterable<Property>, Serializable
 	}
 	
 	public void set(Property pProperty)
+	{
+		store(pProperty);
+	}
+	
+	/**
+	 * Stores a property and replaces an existing one with the same class.
+	 * Not overridable in order to be usable during deserialization.
+	 */
+	private void store(Property pProperty)
 	{
 		if(pProperty != null) {
-			if(mProperties == null) {
-				mProperties = new LinkedList<Property>();
-			} else {
-				Property tExisting = get(pProperty.getClass());
-				
-				if(tExisting != null) {
-					mProperties.remove(tExisting);
-				}
-			}
+			int tSlot = getSlot(pProperty.getClass(), true);
 			
-			mProperties.add(pProperty);
+			ensureSlot(tSlot);
+			if(mSlots[tSlot] == null) mSize++;
+			
+			mSlots[tSlot] = pProperty;
+			mHash = 0;
 		}
 	}
 	
 	public void add(Property pProperty) throws PropertyException
 	{
 		if(pProperty != null) {
-			Property tExisting = null;
+			int tSlot = getSlot(pProperty.getClass(), true);
 			
-			if(mProperties == null) {
-				mProperties = new LinkedList<Property>();
-			} else {
-				tExisting = get(pProperty.getClass());
-			}
+			ensureSlot(tSlot);
+			Property tExisting = mSlots[tSlot];
 			
 			if(tExisting == null) {
-				mProperties.add(pProperty);
+				mSlots[tSlot] = pProperty;
+				mSize++;
 			} else {
 				tExisting.fuse(pProperty);
 			}
+			
+			mHash = 0;
 		}
 	}
 	
 	public boolean remove(Property pProperty)
 	{
-		if(mProperties != null)
-			return mProperties.remove(pProperty);
-		else
+		if(mSlots != null) {
+			if(pProperty != null) {
+				int tSlot = getSlot(pProperty.getClass(), false);
+				
+				if((tSlot >= 0) && (tSlot < mSlots.length)) {
+					if(pProperty.equals(mSlots[tSlot])) {
+						mSlots[tSlot] = null;
+						mSize--;
+						mHash = 0;
+						return true;
+					}
+				}
+			}
+			
+			return false;
+		} else {
 			return true;
+		}
 	}
 	
 	public boolean isEmpty()
 	{
-		if(mProperties != null)
-			return mProperties.isEmpty();
-		else
-			return true;
+		return mSize == 0;
 	}
 	
 	public boolean isBestEffort()
 	{
-		if(mProperties != null) {
-			for(Property prop : mProperties) {
+		if(mSlots != null) {
+			for(Property prop : mSlots) {
 				if(prop instanceof NonFunctionalRequirementsProperty) {
 					if(!((NonFunctionalRequirementsProperty) prop).isBE()) {
 						return false;
@@ -149,23 +195,20 @@ public class Description implements Iterable<Property>, Serializable
 	
 	public int size()
 	{
-		if(mProperties != null)
-			return mProperties.size();
-		else
-			return 0;
+		return mSize;
 	}
 	
 	@Override
 	public Iterator<Property> iterator()
 	{
-		if(mProperties != null)
-			return mProperties.iterator();
+		if(mSize > 0)
+			return new SlotIterator();
 		else
 			return nullIterator;
 	}
 	
 	/**
-	 * Returns the first property in the description, which class equals
+	 * Returns the property in the description, which class equals
 	 * the given class.
 	 * 
 	 * @param pClassFilter Class of the desired property
@@ -173,13 +216,11 @@ public class Description implements Iterable<Property>, Serializable
 	 */
 	public Property get(Class<?> pClassFilter)
 	{
-		if(pClassFilter != null) {
-			for(Property tProperty : this) {
-				if(tProperty != null) {
-					if(tProperty.getClass().equals(pClassFilter)) {
-						return tProperty;
-					}
-				}
+		if((pClassFilter != null) && (mSlots != null)) {
+			int tSlot = getSlot(pClassFilter, false);
+			
+			if((tSlot >= 0) && (tSlot < mSlots.length)) {
+				return mSlots[tSlot];
 			}
 		}
 		
@@ -195,8 +236,8 @@ public class Description implements Iterable<Property>, Serializable
 	 */
 	public Property get(String pPropertyTypeName)
 	{
-		if(pPropertyTypeName != null) {
-			for(Property tProperty : this) {
+		if((pPropertyTypeName != null) && (mSlots != null)) {
+			for(Property tProperty : mSlots) {
 				if(tProperty != null) {
 					if(pPropertyTypeName.equals(tProperty.getTypeName())) {
 						return tProperty;
@@ -215,15 +256,7 @@ public class Description implements Iterable<Property>, Serializable
 	 */
 	public Description getNonFunctional()
 	{
-		Description tResDesc = new Description();
-		
-		for(Property tProperty : this) {
-			if (tProperty instanceof NonFunctionalRequirementsProperty) {				
-				tResDesc.set(tProperty);
-			}
-		}
-
-		return tResDesc;
+		return filter(true);
 	}
 
 	/**
@@ -233,64 +266,142 @@ public class Description implements Iterable<Property>, Serializable
 	 */
 	public Description getFunctional()
 	{
-		Description tRequirements = new Description();
+		return filter(false);
+	}
+	
+	/**
+	 * @param pNonFunctional Select non-functional or functional properties
+	 * @return Description with the references (!= null)
+	 */
+	private Description filter(boolean pNonFunctional)
+	{
+		Description tResDesc = new Description();
 		
-		for(Property tProp : this) {
-			if(tProp != null) {
-				if(!(tProp instanceof NonFunctionalRequirementsProperty)) {
-					tRequirements.set(tProp);
+		if(mSlots != null) {
+			for(int i = 0; i < mSlots.length; i++) {
+				Property tProperty = mSlots[i];
+				
+				if((tProperty != null) && ((tProperty instanceof NonFunctionalRequirementsProperty) == pNonFunctional)) {
+					// slot numbers are equal for both descriptions
+					if(tResDesc.mSlots == null) tResDesc.mSlots = new Property[mSlots.length];
+					
+					tResDesc.mSlots[i] = tProperty;
+					tResDesc.mSize++;
 				}
 			}
 		}
 		
-		return tRequirements;
+		return tResDesc;
 	}
 
 	
 	/**
-	 * TODO Method does not work for descriptions with same elements but in different order!
+	 * Two descriptions are equal if they contain equal properties.
+	 * Since the properties are ordered by their slot numbers, the order
+	 * of their insertion does not matter.
 	 */
+	@Override
 	public boolean equals(Object obj)
 	{
 		if(obj == this) return true;
 		
-		// empty list is equal to no description (both best effort)
-		if(obj == null) return isBestEffort();
-		
 		if(obj instanceof Description) {			
 			Description descr = (Description) obj;
-			Iterator<Property> tIterator = iterator();
-			Iterator<Property> tNewIterator = descr.iterator();
 			
-			while(tIterator.hasNext() && tNewIterator.hasNext()) {
-				Property tReq    = tIterator.next();
-				Property tNewReq = tNewIterator.next();
+			if(mSize != descr.mSize) {
+				return false;
+			}
+			
+			if(mSize > 0) {
+				// cheap rejection based on cached hash values
+				if(hashCode() != descr.hashCode()) {
+					return false;
+				}
 				
-				if(tReq != null) {
-					if(!tReq.equals(tNewReq)) {
-						return false;
+				int tMaxSlots = Math.max(mSlots.length, descr.mSlots.length);
+				
+				for(int i = 0; i < tMaxSlots; i++) {
+					Property tReq    = (i < mSlots.length) ? mSlots[i] : null;
+					Property tNewReq = (i < descr.mSlots.length) ? descr.mSlots[i] : null;
+					
+					if(tReq != null) {
+						if(!tReq.equals(tNewReq)) {
+							return false;
+						}
+					} else {
+						if(tNewReq != null) {
+							return false;
+						}
 					}
 				}
 			}
 			
-			// both lists ended?
-			if(tIterator.hasNext() || tNewIterator.hasNext()) {
-				return false;
-			}
-			
 			return true;
 		} else {
-			// not a description object
+			// not a description object or null
 			return false;
 		}
 	}
+	
+	/**
+	 * Compares two descriptions and treats {@code null} as a description
+	 * without any property. In contrast to {@link #equals(Object)}, a
+	 * {@code null} description is equal to any best effort description.
+	 * 
+	 * @return true, if both are equal or both are best effort
+	 */
+	public static boolean isEquivalent(Description pDescr1, Description pDescr2)
+	{
+		if(pDescr1 == null) {
+			return (pDescr2 == null) || pDescr2.isBestEffort();
+		}
+		
+		if(pDescr2 == null) {
+			return pDescr1.isBestEffort();
+		}
+		
+		return pDescr1.equals(pDescr2);
+	}
+	
+	/**
+	 * Independent from the order of the properties. The value is cached
+	 * until the description is modified. Properties of the description
+	 * MUST NOT be modified directly (e.g. via {@link Property#fuse})
+	 * if the hash code had been used already.
+	 */
+	@Override
+	public int hashCode()
+	{
+		int tHash = mHash;
+		
+		if((tHash == 0) && (mSize > 0)) {
+			for(Property tProperty : mSlots) {
+				if(tProperty != null) {
+					tHash += tProperty.hashCode();
+				}
+			}
+			
+			mHash = tHash;
+		}
+		
+		return tHash;
+	}
 
 	public Description clone()
 	{
 		Description tDescr = new Description();
 
-		for(Property tProp : this) {
-			tDescr.set(tProp.clone());
+		if(mSlots != null) {
+			tDescr.mSlots = new Property[mSlots.length];
+			
+			for(int i = 0; i < mSlots.length; i++) {
+				if(mSlots[i] != null) {
+					tDescr.mSlots[i] = mSlots[i].clone();
+				}
+			}
+			
+			tDescr.mSize = mSize;
+			tDescr.mHash = mHash;
 		}
 		
 		return tDescr;
@@ -298,13 +409,144 @@ public class Description implements Iterable<Property>, Serializable
 	
 	public String toString()
 	{
-		String tResult = new String();
+		StringBuilder tResult = new StringBuilder();
 		for(Property tProperty : this)
-			tResult += tProperty.toString()+ " ";
+			tResult.append(tProperty.toString()).append(" ");
+		
+		return tResult.toString();
+	}
+	
+	/**
+	 * Enlarges the slot array if required.
+	 */
+	private void ensureSlot(int pSlot)
+	{
+		if(mSlots == null) {
+			mSlots = new Property[Math.max(pSlot +1, sNumberSlots)];
+		}
+		else if(pSlot >= mSlots.length) {
+			Property[] tSlots = new Property[Math.max(pSlot +1, sNumberSlots)];
+			System.arraycopy(mSlots, 0, tSlots, 0, mSlots.length);
+			mSlots = tSlots;
+		}
+	}
+	
+	/**
+	 * Determines the slot number for a property class.
+	 * 
+	 * @param pClass Property class
+	 * @param pCreate Assign a new slot number if the class does not have one
+	 * @return Slot number or -1 if class does not have a slot number and none was created
+	 */
+	private static int getSlot(Class<?> pClass, boolean pCreate)
+	{
+		Integer tSlot = sSlots.get(pClass);
+		
+		if(tSlot == null) {
+			if(pCreate) {
+				synchronized (sSlots) {
+					tSlot = sSlots.get(pClass);
+					
+					if(tSlot == null) {
+						tSlot = sNumberSlots;
+						sSlots.put(pClass, tSlot);
+						sNumberSlots++;
+					}
+				}
+			} else {
+				return -1;
+			}
+		}
+		
+		return tSlot;
+	}
+	
+	private void writeObject(ObjectOutputStream pOut) throws IOException
+	{
+		LinkedList<Property> tProperties = null;
+		
+		if(mSize > 0) {
+			tProperties = new LinkedList<Property>();
+			for(Property tProperty : this) {
+				tProperties.add(tProperty);
+			}
+		}
+		
+		ObjectOutputStream.PutField tFields = pOut.putFields();
+		tFields.put("mProperties", tProperties);
+		pOut.writeFields();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream pIn) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField tFields = pIn.readFields();
+		LinkedList<Property> tProperties = (LinkedList<Property>) tFields.get("mProperties", null);
 		
-		return tResult;
+		if(tProperties != null) {
+			for(Property tProperty : tProperties) {
+				store(tProperty);
+			}
+		}
 	}
 	
-	private LinkedList<Property> mProperties;
+	/**
+	 * Iterates over the non-empty slots.
+	 */
+	private class SlotIterator implements Iterator<Property>
+	{
+		public SlotIterator()
+		{
+			mNext = findNext(0);
+		}
+		
+		@Override
+		public boolean hasNext()
+		{
+			return mNext < mSlots.length;
+		}
 
+		@Override
+		public Property next()
+		{
+			if(!hasNext()) throw new NoSuchElementException();
+			
+			mLast = mNext;
+			mNext = findNext(mNext +1);
+			return mSlots[mLast];
+		}
+
+		@Override
+		public void remove()
+		{
+			if((mLast < 0) || (mSlots[mLast] == null)) throw new IllegalStateException();
+			
+			mSlots[mLast] = null;
+			mSize--;
+			mHash = 0;
+		}
+		
+		private int findNext(int pStart)
+		{
+			while((pStart < mSlots.length) && (mSlots[pStart] == null)) {
+				pStart++;
+			}
+			
+			return pStart;
+		}
+		
+		private int mNext;
+		private int mLast = -1;
+	}
+	
+	/* stable slot numbers for property classes */
+	private static final ConcurrentHashMap<Class<?>, Integer> sSlots = new ConcurrentHashMap<Class<?>, Integer>();
+	private static volatile int sNumberSlots = 0;
+	
+	/* properties indexed by their slot numbers (lazy creation) */
+	private transient Property[] mSlots;
+	private transient int mSize;
+	
+	/* cached hash code; zero if not computed yet */
+	private transient int mHash;
 }
@@ -0,0 +1,253 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.WeakHashMap;
+
+import net.rapi.properties.Property;
+import net.rapi.properties.PropertyException;
+
+
+/**
+ * Description, which can not be modified after its creation.
+ * 
+ * Instances are interned: All immutable descriptions with the same
+ * properties are represented by a single instance. Thus, comparing them
+ * is an identity check, their hash code is computed once and cloning
+ * them is free. That makes them suitable as keys for caches.
+ * 
+ * The properties of an immutable description are owned by it. Callers
+ * MUST NOT modify properties returned by {@link #get(Class)} or the
+ * iterator (e.g. via {@link Property#fuse}).
+ */
+public final class ImmutableDescription extends Description
+{
+	private static final long serialVersionUID = 4377906493296131806L;
+	
+	/* all interned instances; weak in order to allow garbage collection of unused ones
+	 * (declared before EMPTY due to static initialization order) */
+	private static final WeakHashMap<ImmutableDescription, WeakReference<ImmutableDescription>> sInterned = new WeakHashMap<ImmutableDescription, WeakReference<ImmutableDescription>>();
+	
+	/**
+	 * Description without any property (best effort)
+	 */
+	public static final ImmutableDescription EMPTY = intern(new ImmutableDescription(new Description()));
+	
+	
+	private ImmutableDescription(Description pContent)
+	{
+		super(pContent);
+		
+		// precompute hash code for interning
+		hashCode();
+	}
+	
+	/**
+	 * Returns the immutable version of a description. The properties of
+	 * a mutable description are cloned.
+	 * 
+	 * @param pDescription Description (might be {@code null})
+	 * @return Interned immutable description or {@code null} if parameter is {@code null}
+	 */
+	public static ImmutableDescription of(Description pDescription)
+	{
+		if(pDescription == null) return null;
+		
+		if(pDescription instanceof ImmutableDescription) {
+			return (ImmutableDescription) pDescription;
+		}
+		
+		return intern(new ImmutableDescription(pDescription.clone()));
+	}
+	
+	/**
+	 * @return Builder for creating an immutable description
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+	
+	/**
+	 * Returns the instance already representing the properties of a
+	 * candidate or registers the candidate as such an instance.
+	 */
+	private static ImmutableDescription intern(ImmutableDescription pCandidate)
+	{
+		synchronized (sInterned) {
+			// candidate is not interned; thus, lookup compares the properties
+			WeakReference<ImmutableDescription> tRef = sInterned.get(pCandidate);
+			
+			if(tRef != null) {
+				ImmutableDescription tExisting = tRef.get();
+				
+				if(tExisting != null) {
+					return tExisting;
+				}
+			}
+			
+			pCandidate.mInterned = true;
+			sInterned.put(pCandidate, new WeakReference<ImmutableDescription>(pCandidate));
+			return pCandidate;
+		}
+	}
+	
+	@Override
+	public void set(Property pProperty)
+	{
+		throw new UnsupportedOperationException(this +" - Immutable description can not be modified.");
+	}
+	
+	@Override
+	public void add(Property pProperty) throws PropertyException
+	{
+		throw new UnsupportedOperationException(this +" - Immutable description can not be modified.");
+	}
+	
+	@Override
+	public void append(Description pToAppend) throws PropertyException
+	{
+		throw new UnsupportedOperationException(this +" - Immutable description can not be modified.");
+	}
+	
+	@Override
+	public boolean remove(Property pProperty)
+	{
+		throw new UnsupportedOperationException(this +" - Immutable description can not be modified.");
+	}
+	
+	@Override
+	public Iterator<Property> iterator()
+	{
+		final Iterator<Property> tIterator = super.iterator();
+		
+		return new Iterator<Property>() {
+			@Override
+			public boolean hasNext()
+			{
+				return tIterator.hasNext();
+			}
+
+			@Override
+			public Property next()
+			{
+				return tIterator.next();
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException(ImmutableDescription.this +" - Immutable description can not be modified.");
+			}
+		};
+	}
+	
+	/**
+	 * Two interned descriptions are equal if they are identical.
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(obj == this) return true;
+		
+		if(mInterned && (obj instanceof ImmutableDescription)) {
+			if(((ImmutableDescription) obj).mInterned) {
+				return false;
+			}
+		}
+		
+		return super.equals(obj);
+	}
+	
+	/**
+	 * Immutable objects do not have to be cloned.
+	 */
+	@Override
+	public Description clone()
+	{
+		return this;
+	}
+	
+	/**
+	 * @return Mutable description with clones of the properties
+	 */
+	public Description toMutable()
+	{
+		return super.clone();
+	}
+	
+	/**
+	 * Replaces deserialized objects with the interned instance.
+	 */
+	private Object readResolve()
+	{
+		return intern(new ImmutableDescription(this));
+	}
+	
+	/**
+	 * Builder for immutable descriptions. The properties handed over to
+	 * the builder are cloned immediately, since adding fuses properties
+	 * in place. Thus, the properties of the caller are not modified and
+	 * the builder can be reused.
+	 */
+	public static class Builder
+	{
+		private Builder()
+		{
+		}
+		
+		public Builder set(Property pProperty)
+		{
+			if(pProperty != null) {
+				mDescription.set(pProperty.clone());
+			}
+			return this;
+		}
+		
+		public Builder add(Property pProperty) throws PropertyException
+		{
+			if(pProperty != null) {
+				mDescription.add(pProperty.clone());
+			}
+			return this;
+		}
+		
+		public Builder append(Description pToAppend) throws PropertyException
+		{
+			if(pToAppend != null) {
+				for(Property tProperty : pToAppend) {
+					add(tProperty);
+				}
+			}
+			return this;
+		}
+		
+		/**
+		 * @return Interned immutable description with the properties of the builder
+		 */
+		public ImmutableDescription build()
+		{
+			return intern(new ImmutableDescription(mDescription.clone()));
+		}
+		
+		private final Description mDescription = new Description();
+	}
+	
+	private transient boolean mInterned = false;
+}
@@ -89,7 +89,9 @@ public interface Layer extends EventSource
 	
 	/**
 	 * Determines neighbor information about the {@link Binding}s reachable
-	 * via this layer.
+	 * via this layer. Layers with large neighbor tables might implement
+	 * {@link NeighborDiscovery} in addition, which enables users to
+	 * enumerate the neighbors page by page and to track changes incrementally.
 	 * 
 	 * @param namePrefix Optional filter for the request. If present, only neighbors with a name having this prefix will be listed.
 	 * @return List of reachable neighbors or null if lower layer is broken
@@ -0,0 +1,250 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Interns names and namespaces and maps them to small integer ids.
+ * 
+ * For each name, the registry stores an {@link Entry} with the canonical
+ * name object, its id, its serialized size and its hash code. Layers,
+ * which require the serialized size of a name per packet (e.g. for
+ * calculating the header overhead), keep the entry and read the cached
+ * values instead of calling {@link Name#getSerialisedSize()}. Ids are
+ * suitable for compact encodings and array-based lookup tables. The ids
+ * of namespaces are their ordinals (see {@link Namespace#ordinal()}).
+ * 
+ * Names have to be immutable. Ids are not reused after the removal of a
+ * name. Lookups do not block.
+ */
+public class NameRegistry
+{
+	/**
+	 * @return Registry shared by all users in the JVM
+	 */
+	public static NameRegistry getDefault()
+	{
+		return sDefault;
+	}
+	
+	/**
+	 * Returns the entry for a name. If the name is not known, an entry
+	 * is created and the name becomes the canonical instance.
+	 * 
+	 * @param pName Name ({@code != null})
+	 * @return Entry for the name ({@code != null})
+	 */
+	public Entry register(Name pName)
+	{
+		Entry tEntry = mEntries.get(pName);
+		
+		if(tEntry == null) {
+			synchronized (mEntries) {
+				tEntry = mEntries.get(pName);
+				
+				if(tEntry == null) {
+					tEntry = new Entry(mNextNameId, pName);
+					mNextNameId++;
+					
+					store(tEntry.mId, tEntry);
+					mEntries.put(pName, tEntry);
+				}
+			}
+		}
+		
+		return tEntry;
+	}
+	
+	/**
+	 * @return Entry for the name or {@code null} if it is not registered
+	 */
+	public Entry getEntry(Name pName)
+	{
+		return mEntries.get(pName);
+	}
+	
+	/**
+	 * @return Entry for the id or {@code null} if there is no such name
+	 */
+	public Entry getEntry(int pId)
+	{
+		AtomicReferenceArray<Entry> tEntries = mNamesById;
+		
+		if((pId >= 0) && (pId < tEntries.length())) {
+			return tEntries.get(pId);
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return Canonical instance equal to the name
+	 */
+	public Name intern(Name pName)
+	{
+		return register(pName).getName();
+	}
+	
+	/**
+	 * @return Id of the name (registers the name if required)
+	 */
+	public int getId(Name pName)
+	{
+		return register(pName).getId();
+	}
+	
+	/**
+	 * Does not register the name, since per packet lookups would fill
+	 * the registry without bound.
+	 * 
+	 * @return Cached serialized size of a registered name; otherwise calculated by the name
+	 */
+	public int getSerialisedSize(Name pName)
+	{
+		Entry tEntry = mEntries.get(pName);
+		
+		if(tEntry != null) {
+			return tEntry.getSerialisedSize();
+		} else {
+			return pName.getSerialisedSize();
+		}
+	}
+	
+	/**
+	 * Removes a name from the registry. Its id is not reused.
+	 * 
+	 * @return If the name was registered
+	 */
+	public boolean remove(Name pName)
+	{
+		synchronized (mEntries) {
+			Entry tEntry = mEntries.remove(pName);
+			
+			if(tEntry != null) {
+				store(tEntry.mId, null);
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * @param pNamespace Namespace ({@code != null})
+	 * @return Id of the namespace, which is equal to its ordinal
+	 */
+	public int getId(Namespace pNamespace)
+	{
+		return pNamespace.ordinal();
+	}
+	
+	/**
+	 * @return Namespace with the id or {@code null} if there is no such namespace
+	 */
+	public Namespace getNamespace(int pId)
+	{
+		return Namespace.get(pId);
+	}
+	
+	/**
+	 * @return Number of registered names
+	 */
+	public int size()
+	{
+		return mEntries.size();
+	}
+	
+	/**
+	 * Updates the id table in place. The table is copied only if it has
+	 * to grow; its size is doubled in order to keep registrations in
+	 * amortized constant time. Caller has to hold the lock of the entries.
+	 */
+	private void store(int pId, Entry pEntry)
+	{
+		AtomicReferenceArray<Entry> tEntries = mNamesById;
+		
+		if(pId >= tEntries.length()) {
+			AtomicReferenceArray<Entry> tGrown = new AtomicReferenceArray<Entry>(Math.max(pId +1, tEntries.length() *2));
+			
+			for(int i = 0; i < tEntries.length(); i++) {
+				tGrown.set(i, tEntries.get(i));
+			}
+			
+			tEntries = tGrown;
+			mNamesById = tGrown;
+		}
+		
+		tEntries.set(pId, pEntry);
+	}
+	
+	/**
+	 * Registered name with its cached values.
+	 */
+	public static final class Entry
+	{
+		private Entry(int pId, Name pName)
+		{
+			mId = pId;
+			mName = pName;
+			mSerialisedSize = pName.getSerialisedSize();
+			mHash = pName.hashCode();
+		}
+		
+		public int getId()
+		{
+			return mId;
+		}
+		
+		/**
+		 * @return Canonical name object
+		 */
+		public Name getName()
+		{
+			return mName;
+		}
+		
+		public int getSerialisedSize()
+		{
+			return mSerialisedSize;
+		}
+		
+		public int getHashCode()
+		{
+			return mHash;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return mName +"#" +mId;
+		}
+		
+		private final int mId;
+		private final Name mName;
+		private final int mSerialisedSize;
+		private final int mHash;
+	}
+	
+	private static final NameRegistry sDefault = new NameRegistry();
+	
+	private final ConcurrentHashMap<Name, Entry> mEntries = new ConcurrentHashMap<Name, Entry>();
+	private volatile AtomicReferenceArray<Entry> mNamesById = new AtomicReferenceArray<Entry>(16);
+	private int mNextNameId = 0; /* guarded by lock of mEntries */
+}
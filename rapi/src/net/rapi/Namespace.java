@@ -17,51 +17,179 @@
 package net.rapi;
 
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
  * Namespaces for application names.
+ * 
+ * Namespaces are canonical singletons per (case-insensitive) name, which
+ * are returned by {@link #of(String)}. Each canonical namespace has a
+ * unique ordinal (see {@link #ordinal()}). Thus, comparing namespaces does
+ * not require string comparisons and namespaces can be used as array index
+ * (see {@link NamespaceMap}). Objects created via the deprecated constructors
+ * share the ordinal of the canonical instance and are equal to it. They keep
+ * their own application flag (see {@link #isAppNamespace()}), whereas the
+ * flag of the canonical instance is fixed at its registration.
  */
 public class Namespace implements Serializable
 {
 	private static final long serialVersionUID = 5923391131934016194L;
 	
 	
+	/**
+	 * Returns the canonical name space for a name. The name is not case
+	 * sensitive. Unknown names are registered as non-application namespaces.
+	 * 
+	 * @param pName non-null name of the name space
+	 * @return Canonical name space (same object for all calls with an equal name)
+	 */
+	public static Namespace of(String pName)
+	{
+		return canonical(pName, false);
+	}
+	
+	/**
+	 * Returns the canonical name space for a name. The flag for application
+	 * namespaces is defined by the first call for a name.
+	 * 
+	 * @param pName non-null name of the name space
+	 * @param pIsAppNamespace Indicates if the namespace is an application one
+	 * @return Canonical name space (same object for all calls with an equal name)
+	 * @throws IllegalArgumentException If the canonical name space was registered with the other flag
+	 */
+	public static Namespace of(String pName, boolean pIsAppNamespace)
+	{
+		Namespace tNamespace = canonical(pName, pIsAppNamespace);
+		
+		if(tNamespace.mIsAppNamespace != pIsAppNamespace) {
+			throw new IllegalArgumentException("Namespace " +tNamespace +" is registered with application flag " +tNamespace.mIsAppNamespace +".");
+		}
+		
+		return tNamespace;
+	}
+	
+	/**
+	 * Returns the canonical name space for a name and registers it if required.
+	 * 
+	 * @param pIsAppNamespace Flag used if the name space is not registered yet
+	 */
+	private static Namespace canonical(String pName, boolean pIsAppNamespace)
+	{
+		// fast path without case-folding for names used previously
+		Namespace tNamespace = sCanonical.get(pName);
+		
+		if(tNamespace == null) {
+			String tLowerName = pName.toLowerCase();
+			
+			synchronized (sCanonical) {
+				tNamespace = sCanonical.get(tLowerName);
+				
+				if(tNamespace == null) {
+					tNamespace = new Namespace(tLowerName, pIsAppNamespace, sNumberNamespaces);
+					
+					sCanonical.put(tLowerName, tNamespace);
+					sByOrdinal = store(sByOrdinal, tNamespace);
+					sNumberNamespaces++;
+				}
+			}
+			
+			// remember spelling of caller as alias for the fast path
+			if(!tLowerName.equals(pName)) {
+				sCanonical.putIfAbsent(pName, tNamespace);
+			}
+		}
+		
+		return tNamespace;
+	}
+	
+	/**
+	 * @return Canonical namespace with the ordinal or {@code null} if there is no such namespace
+	 */
+	public static Namespace get(int pOrdinal)
+	{
+		Namespace[] tNamespaces = sByOrdinal;
+		
+		if((pOrdinal >= 0) && (pOrdinal < tNamespaces.length)) {
+			return tNamespaces[pOrdinal];
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return Number of canonical namespaces (all ordinals are smaller)
+	 */
+	public static int getNumberNamespaces()
+	{
+		return sNumberNamespaces;
+	}
+	
 	/**
 	 * Creates a name space object based on a string, which
 	 * is defining the prefix for all names of this name space.
 	 * 
 	 * @param pName non-null name of the name space
+	 * @deprecated Use {@link #of(String)} in order to get the canonical instance
 	 */
+	@Deprecated
 	public Namespace(String pName)
 	{
-		mName = pName.toLowerCase();
-		mIsAppNamespace = false;
+		this(pName, false);
 	}
 	
+	/**
+	 * @deprecated Use {@link #of(String, boolean)} in order to get the canonical instance
+	 */
+	@Deprecated
 	public Namespace(String pName, boolean pIsAppNamespace)
 	{
-		this(pName);
+		// flag is kept per object; it might differ from the canonical one
+		Namespace tCanonical = canonical(pName, pIsAppNamespace);
 		
+		mName = tCanonical.mName;
 		mIsAppNamespace = pIsAppNamespace;
+		mOrdinal = tCanonical.mOrdinal;
+	}
+	
+	private Namespace(String pLowerName, boolean pIsAppNamespace, int pOrdinal)
+	{
+		mName = pLowerName;
+		mIsAppNamespace = pIsAppNamespace;
+		mOrdinal = pOrdinal;
+	}
+	
+	/**
+	 * @return Unique number of the namespace (>= 0)
+	 */
+	public int ordinal()
+	{
+		return mOrdinal;
 	}
 	
 	@Override
 	public int hashCode()
 	{
-		return mName.hashCode();
+		return mOrdinal;
 	}
 	
 	@Override
 	public boolean equals(Object pObj)
 	{
+		if(pObj == this) return true;
+		
 		if(pObj != null) {
-			if(pObj instanceof String) {
-				return mName.equalsIgnoreCase((String) pObj);
+			if(pObj instanceof Namespace) {
+				return mOrdinal == ((Namespace) pObj).mOrdinal;
 			}
 			
-			if(pObj instanceof Namespace) {
-				return mName.equals(pObj.toString());
+			if(pObj instanceof String) {
+				// each namespace is registered with its lower case name
+				String tName = (String) pObj;
+				Namespace tNamespace = sCanonical.get(tName);
+				if(tNamespace == null) tNamespace = sCanonical.get(tName.toLowerCase());
+				
+				return (tNamespace != null) && (mOrdinal == tNamespace.mOrdinal);
 			}
 		}
 		
@@ -82,6 +210,48 @@ public class Namespace implements Serializable
 		return mIsAppNamespace;
 	}
 	
+	/**
+	 * Replaces deserialized objects with the canonical instance if their
+	 * flags are equal. Otherwise, the object keeps its flag and shares the
+	 * ordinal of the canonical instance, as objects of the deprecated
+	 * constructors do.
+	 */
+	private Object readResolve()
+	{
+		Namespace tCanonical = canonical(mName, mIsAppNamespace);
+		
+		if(tCanonical.mIsAppNamespace == mIsAppNamespace) {
+			return tCanonical;
+		} else {
+			mOrdinal = tCanonical.mOrdinal;
+			return this;
+		}
+	}
+	
+	/**
+	 * Copy-on-write update of the ordinal table. Caller has to hold the lock of the canonical map.
+	 */
+	private static Namespace[] store(Namespace[] pNamespaces, Namespace pNamespace)
+	{
+		Namespace[] tNamespaces = pNamespaces;
+		
+		if(pNamespace.mOrdinal >= tNamespaces.length) {
+			tNamespaces = new Namespace[Math.max(pNamespace.mOrdinal +1, tNamespaces.length *2)];
+			System.arraycopy(pNamespaces, 0, tNamespaces, 0, pNamespaces.length);
+		} else {
+			tNamespaces = tNamespaces.clone();
+		}
+		
+		tNamespaces[pNamespace.mOrdinal] = pNamespace;
+		return tNamespaces;
+	}
+	
 	private String mName;
 	private boolean mIsAppNamespace;
+	private transient int mOrdinal;
+	
+	/* canonical namespaces by lower case name and by aliases */
+	private static final ConcurrentHashMap<String, Namespace> sCanonical = new ConcurrentHashMap<String, Namespace>();
+	private static volatile Namespace[] sByOrdinal = new Namespace[16];
+	private static volatile int sNumberNamespaces = 0; /* modified while holding lock of sCanonical */
 }
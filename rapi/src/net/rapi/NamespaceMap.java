@@ -0,0 +1,233 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * Map with {@link Namespace}s as keys, which is similar to an
+ * {@link java.util.EnumMap}. The values are stored in an array indexed by
+ * the ordinal of the namespaces. Thus, lookups (e.g. dispatching names to
+ * a handler per namespace) require neither hashing nor string comparisons.
+ * 
+ * The map is not thread-safe. Iteration is done in the order of the
+ * ordinals. Null values are supported; null keys are not.
+ */
+public class NamespaceMap<V> extends AbstractMap<Namespace, V>
+{
+	public NamespaceMap()
+	{
+		values = new Object[Math.max(Namespace.getNumberNamespaces(), 1)];
+	}
+	
+	public NamespaceMap(Map<Namespace, ? extends V> original)
+	{
+		this();
+		putAll(original);
+	}
+	
+	@Override
+	public V get(Object key)
+	{
+		if(key instanceof Namespace) {
+			int ordinal = ((Namespace) key).ordinal();
+			
+			if(ordinal < values.length) {
+				return unmask(values[ordinal]);
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Typed version of {@link #get(Object)} without type check.
+	 */
+	public V get(Namespace key)
+	{
+		int ordinal = key.ordinal();
+		
+		if(ordinal < values.length) {
+			return unmask(values[ordinal]);
+		} else {
+			return null;
+		}
+	}
+	
+	@Override
+	public boolean containsKey(Object key)
+	{
+		if(key instanceof Namespace) {
+			int ordinal = ((Namespace) key).ordinal();
+			
+			return (ordinal < values.length) && (values[ordinal] != null);
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public V put(Namespace key, V value)
+	{
+		if(key == null) throw new NullPointerException(this.getClass() +" - Null keys are not supported.");
+		
+		int ordinal = key.ordinal();
+		if(ordinal >= values.length) {
+			// namespace was created after map
+			Object[] newValues = new Object[Math.max(ordinal +1, Namespace.getNumberNamespaces())];
+			System.arraycopy(values, 0, newValues, 0, values.length);
+			values = newValues;
+		}
+		
+		Object old = values[ordinal];
+		values[ordinal] = mask(value);
+		
+		if(old == null) size++;
+		return unmask(old);
+	}
+	
+	@Override
+	public V remove(Object key)
+	{
+		if(key instanceof Namespace) {
+			int ordinal = ((Namespace) key).ordinal();
+			
+			if(ordinal < values.length) {
+				Object old = values[ordinal];
+				
+				if(old != null) {
+					values[ordinal] = null;
+					size--;
+				}
+				
+				return unmask(old);
+			}
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public int size()
+	{
+		return size;
+	}
+	
+	@Override
+	public void clear()
+	{
+		for(int i = 0; i < values.length; i++) {
+			values[i] = null;
+		}
+		
+		size = 0;
+	}
+	
+	@Override
+	public Set<Map.Entry<Namespace, V>> entrySet()
+	{
+		return new AbstractSet<Map.Entry<Namespace, V>>() {
+			@Override
+			public Iterator<Map.Entry<Namespace, V>> iterator()
+			{
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+	
+	private static Object mask(Object value)
+	{
+		if(value == null) return NULL_VALUE;
+		else return value;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <V> V unmask(Object value)
+	{
+		if(value == NULL_VALUE) return null;
+		else return (V) value;
+	}
+	
+	/**
+	 * Iterates the used slots in the order of the ordinals.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<Namespace, V>>
+	{
+		@Override
+		public boolean hasNext()
+		{
+			while((next < values.length) && (values[next] == null)) {
+				next++;
+			}
+			
+			return next < values.length;
+		}
+
+		@Override
+		public Map.Entry<Namespace, V> next()
+		{
+			if(!hasNext()) throw new NoSuchElementException();
+			
+			last = next;
+			next++;
+			
+			Namespace key = Namespace.get(last);
+			V value = unmask(values[last]);
+			
+			return new AbstractMap.SimpleEntry<Namespace, V>(key, value) {
+				private static final long serialVersionUID = 2417520427004640286L;
+
+				@Override
+				public V setValue(V newValue)
+				{
+					values[getKey().ordinal()] = mask(newValue);
+					return super.setValue(newValue);
+				}
+			};
+		}
+
+		@Override
+		public void remove()
+		{
+			if(last < 0) throw new IllegalStateException();
+			
+			values[last] = null;
+			size--;
+			last = -1;
+		}
+		
+		private int next = 0;
+		private int last = -1;
+	}
+	
+	private static final Object NULL_VALUE = new Object();
+	
+	private Object[] values;
+	private int size = 0;
+}
@@ -0,0 +1,61 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi;
+
+import net.rapi.events.NeighborDeltaEvent;
+
+
+/**
+ * Optional interface for {@link Layer}s with large neighbor tables. In
+ * contrast to {@link Layer#getNeighbors(Name)}, the neighbors are
+ * enumerated page by page and the filtering by the name prefix is done
+ * by the layer. Changes of the neighbor table are reported in batches via
+ * {@link NeighborDeltaEvent}s of the layer.
+ * 
+ * In order to track the neighbors incrementally, a user registers a
+ * listener for the delta events first and enumerates the neighbors
+ * afterwards. Deltas with a version higher than the version of the first
+ * page have to be applied to the enumerated set. Since deltas contain sets
+ * of appeared and disappeared neighbors, applying a change twice does not
+ * harm. If a delta version is skipped, the user has to enumerate again.
+ */
+public interface NeighborDiscovery
+{
+	/**
+	 * Cursor for requesting the first page
+	 */
+	public static final long FIRST_PAGE = 0;
+	
+	/**
+	 * Returns the next page of neighbors. The enumeration is weakly
+	 * consistent: Neighbors, which are present during the whole enumeration,
+	 * are listed exactly once. Neighbors appearing or disappearing during the
+	 * enumeration might be listed or not.
+	 * 
+	 * @param namePrefix Optional filter. If present, only neighbors with a name having this prefix will be listed.
+	 * @param cursor {@link #FIRST_PAGE} or cursor of the previous page (see {@link NeighborPage#getNextCursor()})
+	 * @param maxNeighbors Maximum number of neighbors in the page (> 0)
+	 * @return Page of neighbors ({@code != null})
+	 * @throws NetworkException On error (e.g. lower layer is broken)
+	 */
+	public NeighborPage getNeighbors(Name namePrefix, long cursor, int maxNeighbors) throws NetworkException;
+	
+	/**
+	 * @return Version of the last {@link NeighborDeltaEvent} of the layer
+	 */
+	public long getNeighborVersion();
+}
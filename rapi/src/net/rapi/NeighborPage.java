@@ -0,0 +1,84 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Page of neighbors returned by {@link NeighborDiscovery#getNeighbors(Name, long, int)}.
+ */
+public class NeighborPage
+{
+	/**
+	 * @param neighbors Neighbors of the page
+	 * @param nextCursor Cursor for requesting the next page
+	 * @param hasMore If further neighbors might be available
+	 * @param version Neighbor version of the layer at the time of the request
+	 */
+	public NeighborPage(List<NeighborName> neighbors, long nextCursor, boolean hasMore, long version)
+	{
+		this.neighbors = Collections.unmodifiableList(neighbors);
+		this.nextCursor = nextCursor;
+		this.hasMore = hasMore;
+		this.version = version;
+	}
+	
+	/**
+	 * @return Neighbors of this page ({@code != null}; read-only)
+	 */
+	public List<NeighborName> getNeighbors()
+	{
+		return neighbors;
+	}
+	
+	/**
+	 * @return Cursor for requesting the next page
+	 */
+	public long getNextCursor()
+	{
+		return nextCursor;
+	}
+	
+	/**
+	 * @return {@code false}, if this is the last page; {@code true} otherwise
+	 */
+	public boolean hasMore()
+	{
+		return hasMore;
+	}
+	
+	/**
+	 * @return Neighbor version of the layer before the page was assembled
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() +"(" +neighbors.size() +" neighbors, version " +version +", next " +nextCursor +")";
+	}
+	
+	private final List<NeighborName> neighbors;
+	private final long nextCursor;
+	private final boolean hasMore;
+	private final long version;
+}
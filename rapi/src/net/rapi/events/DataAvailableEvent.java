@@ -22,7 +22,29 @@ import net.rapi.EventSource;
 public class DataAvailableEvent extends Event
 {
 	public DataAvailableEvent(EventSource source)
+	{
+		this(source, 1);
+	}
+	
+	/**
+	 * Event for a batch of data objects, which became available at once.
+	 * 
+	 * @param count Number of newly available data objects
+	 */
+	public DataAvailableEvent(EventSource source, int count)
 	{
 		super(source);
+		
+		this.count = count;
+	}
+	
+	/**
+	 * @return Number of newly available data objects
+	 */
+	public int getCount()
+	{
+		return count;
 	}
+	
+	private int count;
 }
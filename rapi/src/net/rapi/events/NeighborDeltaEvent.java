@@ -0,0 +1,69 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.events;
+
+import java.util.Collections;
+import java.util.Set;
+
+import net.rapi.EventSource;
+import net.rapi.NeighborName;
+
+/**
+ * Batch of changes of the neighbor table of a layer. In contrast to
+ * {@link PeerInformationEvent}s, a single event informs about many
+ * neighbors. Each event increments the version of the neighbor table
+ * by one (see {@link net.rapi.NeighborDiscovery}).
+ */
+public class NeighborDeltaEvent extends Event
+{
+	public NeighborDeltaEvent(EventSource source, long version, Set<NeighborName> appeared, Set<NeighborName> disappeared)
+	{
+		super(source);
+		
+		this.version = version;
+		this.appeared = Collections.unmodifiableSet(appeared);
+		this.disappeared = Collections.unmodifiableSet(disappeared);
+	}
+	
+	/**
+	 * @return Version of the neighbor table after the changes
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * @return Neighbors appeared since the previous version (read-only)
+	 */
+	public Set<NeighborName> getAppeared()
+	{
+		return appeared;
+	}
+	
+	/**
+	 * @return Neighbors disappeared since the previous version (read-only)
+	 */
+	public Set<NeighborName> getDisappeared()
+	{
+		return disappeared;
+	}
+	
+	private final long version;
+	private final Set<NeighborName> appeared;
+	private final Set<NeighborName> disappeared;
+}
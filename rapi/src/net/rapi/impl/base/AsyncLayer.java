@@ -0,0 +1,173 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import net.rapi.Binding;
+import net.rapi.Connection;
+import net.rapi.Description;
+import net.rapi.EventSource;
+import net.rapi.EventSource.EventListener;
+import net.rapi.Identity;
+import net.rapi.Layer;
+import net.rapi.Name;
+import net.rapi.NetworkException;
+import net.rapi.events.ClosedEvent;
+import net.rapi.events.ConnectedEvent;
+import net.rapi.events.DisconnectedEvent;
+import net.rapi.events.ErrorEvent;
+import net.rapi.events.Event;
+
+
+/**
+ * Adapter providing asynchronous setups of connections and bindings
+ * for an arbitrary {@link Layer}. The setups are tracked via the events
+ * of the {@link Connection} and {@link Binding} objects. Thus, no thread
+ * is blocked while waiting for the setup.
+ */
+public class AsyncLayer
+{
+	public AsyncLayer(Layer layer)
+	{
+		if(layer == null) throw new IllegalArgumentException(this.getClass() +" - Layer is missing.");
+		
+		this.layer = layer;
+	}
+	
+	/**
+	 * Calls {@link Layer#connect} and tracks the setup of the connection.
+	 * The future completes with a {@link ConnectedEvent} and fails with an
+	 * {@link ErrorEvent}, {@link ClosedEvent} or {@link DisconnectedEvent}.
+	 * Cancelling the future closes the connection.
+	 * 
+	 * @return Future for the connection ({@code != null})
+	 */
+	public SetupFuture<Connection> connectAsync(Name name, Description requirements, Identity requester)
+	{
+		final Connection conn = layer.connect(name, requirements, requester);
+		final SetupTracker<Connection> tracker = new SetupTracker<Connection>(conn) {
+			@Override
+			protected boolean isReady()
+			{
+				return conn.isConnected();
+			}
+			
+			@Override
+			protected void onCancel()
+			{
+				super.onCancel();
+				conn.close();
+			}
+		};
+		
+		tracker.start();
+		return tracker;
+	}
+	
+	/**
+	 * Calls {@link Layer#bind} and tracks the setup of the binding.
+	 * The future completes if the binding is active and fails with an
+	 * {@link ErrorEvent}. Cancelling the future closes the binding.
+	 * 
+	 * @return Future for the binding ({@code != null})
+	 */
+	public SetupFuture<Binding> bindAsync(Connection parentSocket, Name name, Description requirements, Identity identity)
+	{
+		final Binding binding = layer.bind(parentSocket, name, requirements, identity);
+		final SetupTracker<Binding> tracker = new SetupTracker<Binding>(binding) {
+			@Override
+			protected boolean isReady()
+			{
+				return binding.isActive();
+			}
+			
+			@Override
+			protected void onCancel()
+			{
+				super.onCancel();
+				binding.close();
+			}
+		};
+		
+		tracker.start();
+		return tracker;
+	}
+	
+	/**
+	 * @return Layer used for the setups
+	 */
+	public Layer getLayer()
+	{
+		return layer;
+	}
+	
+	/**
+	 * Future, which listens to the events of the object set up.
+	 */
+	private static abstract class SetupTracker<T extends EventSource> extends SetupFuture<T> implements EventListener
+	{
+		public SetupTracker(T target)
+		{
+			super(target);
+		}
+		
+		/**
+		 * @return If the object is set up successfully
+		 */
+		protected abstract boolean isReady();
+		
+		public void start()
+		{
+			// previous events are relayed during registration without
+			// consuming them; the application still receives them
+			BaseEventSource.registerInternalListener(getTarget(), this);
+			
+			if(isReady()) {
+				complete();
+			}
+			
+			if(isDone()) {
+				getTarget().unregisterListener(this);
+			}
+		}
+		
+		@Override
+		public void eventOccured(Event event) throws Exception
+		{
+			if(event instanceof ErrorEvent) {
+				fail(((ErrorEvent) event).getException());
+			}
+			else if((event instanceof ClosedEvent) || (event instanceof DisconnectedEvent)) {
+				fail(new NetworkException(getTarget(), "Closed during setup."));
+			}
+			else if((event instanceof ConnectedEvent) || isReady()) {
+				complete();
+			}
+			
+			if(isDone()) {
+				getTarget().unregisterListener(this);
+			}
+		}
+		
+		@Override
+		protected void onCancel()
+		{
+			getTarget().unregisterListener(this);
+		}
+	}
+	
+	private final Layer layer;
+}
@@ -16,7 +16,12 @@
  *****************************************************************************/
 package net.rapi.impl.base;
 
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.rapi.Binding;
 import net.rapi.Connection;
@@ -28,9 +33,17 @@ import net.rapi.events.NewConnectionEvent;
 
 /**
  * This class provides a base implementation for the {@link Binding} interface.
+ * 
+ * New incoming connections are stored in a lock-free queue, which is bounded
+ * by a backlog (see {@link #setBacklog}). Lower layers and applications
+ * access it without locking. Only threads blocked in {@link #accept} require
+ * a lock.
  */
 public abstract class BaseBinding extends BaseEventSource implements Binding
 {
+	public static final int DEFAULT_BACKLOG = 1024;
+	
+	
 	public BaseBinding(Name name, Description requirements, Identity identity)
 	{
 		this.name = name;
@@ -50,32 +63,117 @@ public abstract class BaseBinding extends BaseEventSource implements Binding
 	}
 	
 	@Override
-	public synchronized Connection getIncomingConnection()
+	public Connection getIncomingConnection()
 	{
-		if(newConns != null) {
-			if(!newConns.isEmpty()) {
-				return newConns.removeFirst();
+		Connection conn = newConns.poll();
+		
+		if(conn != null) {
+			numberNewConns.decrementAndGet();
+		}
+		
+		return conn;
+	}
+	
+	@Override
+	public Connection accept(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		// fast path without locking
+		Connection conn = getIncomingConnection();
+		if(conn != null) return conn;
+		
+		long remainingNanos = unit.toNanos(timeout);
+		
+		acceptLock.lockInterruptibly();
+		try {
+			acceptorsWaiting++;
+			try {
+				// re-check after publishing waiting counter in order to avoid lost signals
+				conn = getIncomingConnection();
+				
+				while((conn == null) && (remainingNanos > 0) && !closed) {
+					remainingNanos = notEmpty.awaitNanos(remainingNanos);
+					conn = getIncomingConnection();
+				}
+				
+				return conn;
+			}
+			finally {
+				acceptorsWaiting--;
 			}
 		}
-
-		return null;
+		finally {
+			acceptLock.unlock();
+		}
 	}
 	
 	@Override
-	public synchronized int getNumberWaitingConnections()
+	public int drainIncomingConnections(Collection<? super Connection> sink, int maxElements)
 	{
-		if(newConns != null) {
-			return newConns.size();
-		} else {
-			return 0;
+		int count = 0;
+		
+		while(count < maxElements) {
+			Connection conn = getIncomingConnection();
+			if(conn == null) break;
+			
+			sink.add(conn);
+			count++;
 		}
+		
+		return count;
+	}
+	
+	@Override
+	public int getNumberWaitingConnections()
+	{
+		return Math.max(0, numberNewConns.get());
+	}
+	
+	/**
+	 * Sets the maximum number of new incoming connections waiting for the application.
+	 * 
+	 * @param backlog Maximum number of waiting connections (> 0)
+	 */
+	public void setBacklog(int backlog)
+	{
+		if(backlog <= 0) throw new IllegalArgumentException(this +" - Invalid backlog " +backlog);
+		
+		this.backlog = backlog;
+	}
+	
+	/**
+	 * @return Maximum number of new incoming connections waiting for the application
+	 */
+	public int getBacklog()
+	{
+		return backlog;
 	}
 
-	public synchronized boolean addIncomingConnection(Connection conn)
+	/**
+	 * Called by the lower layer in order to hand over a new incoming connection.
+	 * The connection is rejected if the binding is not active, if it was closed
+	 * or if the backlog is full. In such cases, the lower layer is responsible
+	 * for closing the connection and for informing the peer.
+	 * 
+	 * @return {@code true} if connection was accepted; {@code false} if it was rejected
+	 */
+	public boolean addIncomingConnection(Connection conn)
 	{
-		if(isActive()) {
-			if(newConns == null) newConns = new LinkedList<Connection>();
-			newConns.addLast(conn);
+		if(isActive() && !closed) {
+			// reserve space in queue
+			if(numberNewConns.incrementAndGet() > backlog) {
+				numberNewConns.decrementAndGet();
+				return false;
+			}
+			
+			newConns.offer(conn);
+			
+			// closed in the meantime? close() might have drained the queue already
+			if(closed && newConns.remove(conn)) {
+				numberNewConns.decrementAndGet();
+				return false;
+			}
+			
+			signalConnectionAvailable();
 			
 			// inform app about new connection
 			notifyObservers(new NewConnectionEvent(this));
@@ -103,10 +201,31 @@ public abstract class BaseBinding extends BaseEventSource implements Binding
 		return identity;
 	}
 	
+	/**
+	 * Closes the binding permanently. A closed binding rejects new incoming
+	 * connections, even if it is still active. Waiting connections are closed.
+	 */
 	@Override
-	public synchronized void close()
+	public void close()
 	{
-		newConns = null;
+		closed = true;
+		
+		// close waiting connections; connections added concurrently are
+		// either drained here or rejected by addIncomingConnection
+		Connection conn = getIncomingConnection();
+		while(conn != null) {
+			conn.close();
+			conn = getIncomingConnection();
+		}
+		
+		// wake up all blocked acceptors
+		acceptLock.lock();
+		try {
+			notEmpty.signalAll();
+		}
+		finally {
+			acceptLock.unlock();
+		}
 	}
 	
 	/**
@@ -121,9 +240,33 @@ public abstract class BaseBinding extends BaseEventSource implements Binding
 		notifyObservers(new ErrorEvent(exc, this));
 	}
 	
+	/**
+	 * Wakes up a thread waiting in {@link #accept}.
+	 */
+	private void signalConnectionAvailable()
+	{
+		if(acceptorsWaiting > 0) {
+			acceptLock.lock();
+			try {
+				notEmpty.signal();
+			}
+			finally {
+				acceptLock.unlock();
+			}
+		}
+	}
+	
 	private Name name;
 	private Description requ;
 	private Identity identity;
 	
-	private LinkedList<Connection> newConns = null; /* lazy creation */
+	private final ConcurrentLinkedQueue<Connection> newConns = new ConcurrentLinkedQueue<Connection>();
+	private final AtomicInteger numberNewConns = new AtomicInteger();
+	private volatile int backlog = DEFAULT_BACKLOG;
+	private volatile boolean closed = false;
+	
+	/* synchronization for blocking acceptors */
+	private final ReentrantLock acceptLock = new ReentrantLock();
+	private final Condition notEmpty = acceptLock.newCondition();
+	private volatile int acceptorsWaiting = 0; /* modified while holding acceptLock */
 }
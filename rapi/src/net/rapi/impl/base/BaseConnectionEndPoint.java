@@ -18,19 +18,35 @@ package net.rapi.impl.base;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+import net.rapi.Codec;
 import net.rapi.Connection;
 import net.rapi.Name;
 import net.rapi.NetworkException;
+import net.rapi.events.ClosedEvent;
+import net.rapi.events.ConnectedEvent;
 import net.rapi.events.DataAvailableEvent;
+import net.rapi.events.DisconnectedEvent;
 import net.rapi.events.ErrorEvent;
+import net.rapi.events.Event;
+import net.rapi.events.ServiceDegradationEvent;
 
 
 /**
  * This class implements the Connection interface.
+ * 
+ * All blocking points use {@link java.util.concurrent.locks} instead of
+ * monitors. Thus, applications can serve each connection with a virtual
+ * thread without pinning the carrier threads.
  */
 public abstract class BaseConnectionEndPoint extends BaseEventSource implements Connection
 {
@@ -75,6 +91,129 @@ public abstract class BaseConnectionEndPoint extends BaseEventSource implements
 	 * Called if data should be send to a peer or multiple peers.
 	 */
 	protected abstract void sendDataToPeer(Serializable data) throws NetworkException;
+	
+	/**
+	 * The call is delegated to the method {@link #sendBatchToPeer(List)}.
+	 */
+	@Override
+	public final void writeBatch(List<? extends Serializable> data) throws NetworkException
+	{
+		if(!isConnected()) throw new NetworkException("Connection is broken.");
+		
+		if((data != null) && !data.isEmpty()) {
+			sendBatchToPeer(data);
+		}
+	}
+	
+	/**
+	 * Called if multiple data objects should be send to a peer or multiple peers.
+	 * The default implementation calls {@link #sendDataToPeer(Serializable)} for
+	 * each element. Layers able to coalesce data objects into a single frame
+	 * should override it.
+	 */
+	protected void sendBatchToPeer(List<? extends Serializable> data) throws NetworkException
+	{
+		for(Serializable element : data) {
+			sendDataToPeer(element);
+		}
+	}
+	
+	/**
+	 * Final due to call to write in internal anonymous class (see
+	 * {@link #getOutputStream()}. The call is delegated to the method
+	 * {@link #sendDataToPeer(ByteBuffer)}.
+	 */
+	@Override
+	public final void write(ByteBuffer data) throws NetworkException
+	{
+		if(!isConnected()) throw new NetworkException("Connection is broken.");
+		
+		if(data != null) {
+			sendDataToPeer(data);
+		}
+	}
+	
+	@Override
+	public final void write(ByteBuffer[] data) throws NetworkException
+	{
+		if(!isConnected()) throw new NetworkException("Connection is broken.");
+		
+		if(data != null) {
+			sendDataToPeer(data);
+		}
+	}
+	
+	/**
+	 * Called if the remaining bytes of a buffer should be send to a peer or
+	 * multiple peers. Writable buffers are owned by the connection (see
+	 * {@link Connection#write(ByteBuffer)}). Read-only buffers are just
+	 * borrowed by the caller and their content is only valid during the call.
+	 * 
+	 * The default implementation converts the buffer to a byte array and
+	 * delegates the call to {@link #sendDataToPeer(Serializable)}. It copies
+	 * the data only if the buffer is read-only or does not cover its whole
+	 * backing array. Layers, which serialize or deep-copy the data
+	 * immediately, should override this method in order to avoid that copy.
+	 */
+	protected void sendDataToPeer(ByteBuffer data) throws NetworkException
+	{
+		sendDataToPeer(toByteArray(data));
+	}
+	
+	/**
+	 * Called if the remaining bytes of multiple buffers should be send as one
+	 * chunk of data. The ownership rules are equal to
+	 * {@link #sendDataToPeer(ByteBuffer)}.
+	 * 
+	 * The default implementation gathers all buffers in a single byte array and
+	 * delegates it to {@link #sendDataToPeer(Serializable)}. Layers supporting
+	 * gathering writes should override it.
+	 */
+	protected void sendDataToPeer(ByteBuffer[] data) throws NetworkException
+	{
+		if((data.length == 1) && (data[0] != null)) {
+			sendDataToPeer(data[0]);
+		} else {
+			int size = 0;
+			for(ByteBuffer buffer : data) {
+				if(buffer != null) size += buffer.remaining();
+			}
+			
+			byte[] gathered = new byte[size];
+			int offset = 0;
+			for(ByteBuffer buffer : data) {
+				if(buffer != null) {
+					int length = buffer.remaining();
+					
+					// use duplicate in order to avoid side effects on the buffer positions
+					buffer.duplicate().get(gathered, offset, length);
+					offset += length;
+				}
+			}
+			
+			sendDataToPeer(gathered);
+		}
+	}
+	
+	/**
+	 * Extracts the remaining bytes of a buffer. Copies the data only if the
+	 * buffer does not own a backing array matching exactly the remaining bytes.
+	 */
+	private static byte[] toByteArray(ByteBuffer data)
+	{
+		if(data.hasArray()) {
+			byte[] array = data.array();
+			
+			if((data.arrayOffset() +data.position() == 0) && (data.remaining() == array.length)) {
+				// buffer is owned by us and wraps whole array -> no copy required
+				return array;
+			}
+		}
+		
+		byte[] copy = new byte[data.remaining()];
+		data.duplicate().get(copy);
+		return copy;
+	}
 
 	@Override
 	public OutputStream getOutputStream() throws IOException
@@ -92,26 +231,28 @@ public abstract class BaseConnectionEndPoint extends BaseEventSource implements
 					}
 				}
 				
-				public synchronized void write(byte b[], int off, int len) throws IOException
+				public void write(byte b[], int off, int len) throws IOException
 				{
-					if(b != null) {
-						try {
-							// Copy array since some apps will reuse b in order
-							// to send the next data chunk! That copy can only be
-							// avoided, if the calls behind "write" really do a
-							// deep copy of the packet. However, the payload will
-							// only be copied if the packet is send through a real
-							// lower layer. In pure simulation scenarios that never
-							// happens.
-							byte[] copyB = new byte[len];
-							System.arraycopy(b, off, copyB, 0, len);
-							
-							BaseConnectionEndPoint.this.write(copyB);
-						}
-						catch(NetworkException exc) {
-							throw new IOException(exc);
+					writeLock.lock();
+					try {
+						if(b != null) {
+							try {
+								// Some apps will reuse b in order to send the next
+								// data chunk. Therefore, b is just lend to the layer
+								// via a read-only buffer. Only layers that do not
+								// really do a deep copy of the packet (e.g. in pure
+								// simulation scenarios) will copy the data (see
+								// sendDataToPeer(ByteBuffer)).
+								BaseConnectionEndPoint.this.write(ByteBuffer.wrap(b, off, len).asReadOnlyBuffer());
+							}
+							catch(NetworkException exc) {
+								throw new IOException(exc);
+							}
 						}
 					}
+					finally {
+						writeLock.unlock();
+					}
 				}
 				
 				@Override
@@ -127,16 +268,20 @@ public abstract class BaseConnectionEndPoint extends BaseEventSource implements
 	}
 
 	@Override
-	public synchronized Object read() throws NetworkException
+	public Object read() throws NetworkException
 	{
 		if(toAppStream != null) {
 			throw new NetworkException(this, "Receiving is done via input stream. Do not call Connection.read."); 
 		}
 		
-		if(toAppBuffer != null) {
-			if(!toAppBuffer.isEmpty()) {
+		RingBuffer<Serializable> buffer = toAppBuffer;
+		if(buffer != null) {
+			Serializable data = buffer.poll();
+			
+			if(data != null) {
 				// return data from buffer although the connection might be closed
-				return toAppBuffer.removeFirst();
+				signalSpaceAvailable();
+				return data;
 			}
 		}
 		
@@ -149,78 +294,564 @@ public abstract class BaseConnectionEndPoint extends BaseEventSource implements
 	}
 	
 	@Override
-	public synchronized InputStream getInputStream() throws IOException
+	public int drainTo(Collection<? super Object> sink) throws NetworkException
+	{
+		return drainTo(sink, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public int drainTo(Collection<? super Object> sink, int maxElements) throws NetworkException
 	{
-		if(toAppStream == null) {
-			toAppStream = new ConnectionEndPointInputStream();
+		if(toAppStream != null) {
+			throw new NetworkException(this, "Receiving is done via input stream. Do not call Connection.drainTo."); 
+		}
+		
+		RingBuffer<Serializable> buffer = toAppBuffer;
+		if(buffer != null) {
+			int count = buffer.drainTo(sink, maxElements);
 			
-			// if there is already some data, copy it to stream
-			// and delete buffer
-			if(toAppBuffer != null) {
-				for(Object obj : toAppBuffer) {
-					toAppStream.addToBuffer(obj);
+			if(count > 0) {
+				// return data from buffer although the connection might be closed
+				signalSpaceAvailable();
+				return count;
+			}
+		}
+		
+		if(!isConnected()) {
+			throw new NetworkException("Connection is broken.");
+		} else {
+			// connection alive but no data available
+			return 0;
+		}
+	}
+	
+	@Override
+	public Object read(long timeout, TimeUnit unit) throws NetworkException, InterruptedException
+	{
+		// fast path without locking
+		Object data = poll();
+		if(data != null) return data;
+		
+		long remainingNanos = unit.toNanos(timeout);
+		
+		bufferLock.lockInterruptibly();
+		try {
+			consumersWaiting++;
+			try {
+				// re-check after publishing waiting counter in order to avoid lost signals
+				data = poll();
+				
+				while((data == null) && (remainingNanos > 0)) {
+					remainingNanos = notEmpty.awaitNanos(remainingNanos);
+					data = poll();
 				}
 				
-				toAppBuffer = null;
+				return data;
+			}
+			finally {
+				consumersWaiting--;
 			}
 		}
-
-		return toAppStream;
+		finally {
+			bufferLock.unlock();
+		}
 	}
 	
 	@Override
-	public int available()
+	public Object take() throws NetworkException, InterruptedException
+	{
+		// fast path without locking
+		Object data = poll();
+		if(data != null) return data;
+		
+		bufferLock.lockInterruptibly();
+		try {
+			consumersWaiting++;
+			try {
+				// re-check after publishing waiting counter in order to avoid lost signals
+				data = poll();
+				
+				while(data == null) {
+					notEmpty.await();
+					data = poll();
+				}
+				
+				return data;
+			}
+			finally {
+				consumersWaiting--;
+			}
+		}
+		finally {
+			bufferLock.unlock();
+		}
+	}
+	
+	/**
+	 * Non-blocking read for {@link #take()} and {@link #read(long, TimeUnit)}.
+	 * In contrast to {@link #read()}, it does not fail while the connection is
+	 * still in the process of creation. Only a terminated connection causes
+	 * an exception.
+	 * 
+	 * @return Data or {@code null} if no data is available
+	 */
+	private Object poll() throws NetworkException
 	{
 		if(toAppStream != null) {
-			return toAppStream.available();
+			throw new NetworkException(this, "Receiving is done via input stream. Do not call Connection.read."); 
+		}
+		
+		RingBuffer<Serializable> buffer = toAppBuffer;
+		if(buffer != null) {
+			Serializable data = buffer.poll();
+			
+			if(data != null) {
+				// return data from buffer although the connection might be closed
+				signalSpaceAvailable();
+				return data;
+			}
+		}
+		
+		if(terminated) {
+			throw new NetworkException(this, "Connection is broken.");
+		} else {
+			// connection alive or in setup but no data available
+			return null;
+		}
+	}
+	
+	@Override
+	public InputStream getInputStream() throws IOException
+	{
+		stateLock.lock();
+		try {
+			if(toAppStream == null) {
+				ConnectionEndPointInputStream stream = new ConnectionEndPointInputStream(codec);
+				
+				// if there is already some data, copy it to stream before
+				// the producer is able to write to the stream directly
+				RingBuffer<Serializable> buffer = toAppBuffer;
+				if(buffer != null) {
+					Serializable data = buffer.poll();
+					
+					while(data != null) {
+						stream.addToBuffer(data);
+						data = buffer.poll();
+					}
+				}
+				
+				toAppStream = stream;
+				
+				// data stored by the producer in the meantime
+				moveBufferToStream();
+				streamFilled = true;
+			}
+			
+			return toAppStream;
+		}
+		finally {
+			stateLock.unlock();
+		}
+	}
+	
+	/**
+	 * @return If the application receives data via {@link #getInputStream()} instead of {@link #read()}
+	 */
+	public boolean isStreamMode()
+	{
+		return toAppStream != null;
+	}
+	
+	@Override
+	public int available()
+	{
+		ConnectionEndPointInputStream stream = toAppStream;
+		if(stream != null) {
+			return stream.available();
 		}
 		
-		if(toAppBuffer != null) {
-			return toAppBuffer.size();
+		RingBuffer<Serializable> buffer = toAppBuffer;
+		if(buffer != null) {
+			return buffer.size();
 		}
 		
 		// no data or connection not open
 		return 0;
 	}
 	
+	@Override
+	public void setCodec(Codec codec)
+	{
+		if(codec == null) throw new IllegalArgumentException(this +" - Codec is missing.");
+		
+		stateLock.lock();
+		try {
+			this.codec = codec;
+			
+			if(toAppStream != null) {
+				toAppStream.setCodec(codec);
+			}
+		}
+		finally {
+			stateLock.unlock();
+		}
+	}
+	
+	@Override
+	public Codec getCodec()
+	{
+		return codec;
+	}
+	
 	/**
-	 * Used to receive incoming packets from remote peer for local one
+	 * Configures the buffer for received data, which is not read by the
+	 * application yet. Has to be called before the first data is stored
+	 * via {@link #storeDataForApp(Serializable)}. The buffer is not used
+	 * if the application reads via the input stream.
+	 * 
+	 * By default, the producer is blocked if the buffer is full (see
+	 * {@link #DEFAULT_OVERFLOW_POLICY}). Dropping data has to be selected
+	 * explicitly via the policy.
+	 * 
+	 * @param capacity Maximum number of buffered data objects (> 0)
+	 * @param policy Reaction if buffer is full ({@code != null})
+	 * @throws IllegalStateException If the buffer already contains data
 	 */
-	public synchronized void storeDataForApp(Serializable data) throws IOException
+	protected void setReceiveBuffer(int capacity, OverflowPolicy policy)
 	{
-		if(toAppStream != null) {
-			// deliver via stream
-			toAppStream.addToBuffer(data);
-		} else {
-			// deliver via buffer
-			if(toAppBuffer == null) {
-				// lazy creation
-				toAppBuffer = new LinkedList<Serializable>();
+		stateLock.lock();
+		try {
+			if(capacity <= 0) throw new IllegalArgumentException(this +" - Invalid receive buffer capacity " +capacity);
+			if(policy == null) throw new IllegalArgumentException(this +" - Overflow policy is missing.");
+			
+			if(toAppBuffer != null) {
+				if(!toAppBuffer.isEmpty()) {
+					throw new IllegalStateException(this +" - Receive buffer can not be changed after data was received.");
+				}
+				
+				// lazy re-creation with new capacity
+				toAppBuffer = null;
 			}
 			
-			toAppBuffer.addLast(data);
+			receiveBufferCapacity = capacity;
+			overflowPolicy = policy;
+		}
+		finally {
+			stateLock.unlock();
+		}
+	}
+	
+	/**
+	 * @return Reaction on a full receive buffer
+	 */
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return overflowPolicy;
+	}
+	
+	/**
+	 * Used to receive incoming packets from remote peer for local one.
+	 * Must be called by a single thread at a time (e.g. the receive thread
+	 * of the lower layer). Depending on the {@link OverflowPolicy}, the
+	 * method blocks or drops data if the receive buffer is full.
+	 * 
+	 * @throws InterruptedIOException If thread was interrupted while waiting for space in the receive buffer
+	 */
+	public void storeDataForApp(Serializable data) throws IOException
+	{
+		if(!deliver(data)) {
+			// data had been dropped
+			return;
 		}
 		
 		// inform local app
+		signalDataAvailable(1);
 		notifyObservers(new DataAvailableEvent(this));
 	}
 	
+	/**
+	 * Used to receive a batch of incoming packets from remote peer for local
+	 * one. In contrast to calling {@link #storeDataForApp(Serializable)} for
+	 * each packet, the application is informed with a single
+	 * {@link DataAvailableEvent} about all stored packets.
+	 * 
+	 * @throws InterruptedIOException If thread was interrupted while waiting for space in the receive buffer
+	 */
+	public void storeBatchForApp(Collection<? extends Serializable> data) throws IOException
+	{
+		int count = 0;
+		
+		for(Serializable element : data) {
+			if(deliver(element)) {
+				count++;
+			}
+		}
+		
+		if(count > 0) {
+			// inform local app
+			signalDataAvailable(count);
+			notifyObservers(new DataAvailableEvent(this, count));
+		}
+	}
+	
+	/**
+	 * Wakes up all threads blocked in {@link #take()} or {@link #read(long, TimeUnit)}
+	 * if the connection is closed or broken. A re-established connection
+	 * (see {@link #connect()}) can be used by them again.
+	 */
+	@Override
+	public void notifyObservers(Event event)
+	{
+		if(event instanceof ConnectedEvent) {
+			terminated = false;
+		}
+		
+		super.notifyObservers(event);
+		
+		if((event instanceof ClosedEvent) || (event instanceof DisconnectedEvent) || (event instanceof ErrorEvent)) {
+			terminated = true;
+			signalStateChanged();
+		}
+	}
+	
+	/**
+	 * @return Receive buffer (lazy creation)
+	 */
+	private RingBuffer<Serializable> getAppBuffer()
+	{
+		RingBuffer<Serializable> buffer = toAppBuffer;
+		
+		if(buffer == null) {
+			stateLock.lock();
+			try {
+				if(toAppBuffer == null) {
+					toAppBuffer = new RingBuffer<Serializable>(receiveBufferCapacity);
+				}
+				
+				buffer = toAppBuffer;
+			}
+			finally {
+				stateLock.unlock();
+			}
+		}
+		
+		return buffer;
+	}
+	
+	/**
+	 * Stores data in the input stream or, if the application does not use
+	 * the stream, in the receive buffer. Keeps the order of the data if the
+	 * application switches to the stream concurrently.
+	 * 
+	 * @return {@code true} if data was stored; {@code false} if it was dropped
+	 */
+	private boolean deliver(Serializable data) throws IOException
+	{
+		ConnectionEndPointInputStream stream = toAppStream;
+		
+		if(stream == null) {
+			// deliver via buffer
+			if(!storeInBuffer(data)) {
+				stream = toAppStream;
+				
+				// app switched to stream while waiting for space?
+				if(stream == null) return false;
+			} else {
+				// did app switched to stream in the meantime?
+				if(toAppStream != null) {
+					moveBufferToStream();
+				}
+				
+				return true;
+			}
+		}
+		
+		// deliver via stream; waits until buffered data was moved to the stream
+		if(!streamFilled) {
+			moveBufferToStream();
+		}
+		
+		// closed stream drops data; no event for unreadable data
+		return stream.addToBuffer(data);
+	}
+	
+	/**
+	 * Stores data in the receive buffer and handles overflows.
+	 * 
+	 * @return {@code true} if data was stored; {@code false} if it was dropped
+	 */
+	private boolean storeInBuffer(Serializable data) throws IOException
+	{
+		RingBuffer<Serializable> buffer = getAppBuffer();
+		
+		while(!buffer.offer(data)) {
+			switch(overflowPolicy) {
+			case BLOCK:
+				// consumers might not be informed about data of current batch yet
+				signalDataAvailable(buffer.size());
+				
+				if(!waitForSpace(buffer)) {
+					// connection was cleaned up
+					return false;
+				}
+				break;
+			case DROP_OLDEST:
+				buffer.poll();
+				break;
+			case DROP_NEWEST:
+				return false;
+			case SIGNAL_DEGRADATION:
+				// inform app once per overflow period
+				if(!degradationSignaled) {
+					degradationSignaled = true;
+					notifyObservers(new ServiceDegradationEvent(this));
+				}
+				return false;
+			}
+		}
+		
+		degradationSignaled = false;
+		return true;
+	}
+	
+	/**
+	 * Blocks the producer until the consumer removes data from the buffer.
+	 * 
+	 * @return {@code false}, if buffer is no longer in use or the application switched to the stream; {@code true} otherwise
+	 */
+	private boolean waitForSpace(RingBuffer<Serializable> buffer) throws InterruptedIOException
+	{
+		bufferLock.lock();
+		try {
+			producerWaiting = true;
+			
+			// re-check after publishing waiting flag in order to avoid lost signals
+			while((buffer.size() >= buffer.capacity()) && (toAppStream == null)) {
+				if(toAppBuffer != buffer) {
+					return false;
+				}
+				
+				notFull.await();
+			}
+			
+			return (toAppBuffer == buffer) && (toAppStream == null);
+		}
+		catch(InterruptedException exc) {
+			// restore interrupt flag for caller
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(this +" - Interrupted while waiting for space in receive buffer.");
+		}
+		finally {
+			producerWaiting = false;
+			bufferLock.unlock();
+		}
+	}
+	
+	/**
+	 * Wakes up the producer if it is waiting for space in the receive buffer.
+	 * Has to be called after data was removed from the buffer.
+	 */
+	private void signalSpaceAvailable()
+	{
+		if(producerWaiting) {
+			bufferLock.lock();
+			try {
+				notFull.signalAll();
+			}
+			finally {
+				bufferLock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Wakes up consumers waiting for data. Has to be called after data
+	 * was added to the receive buffer.
+	 * 
+	 * @param count Number of added data objects; more than one wakes up all consumers
+	 */
+	private void signalDataAvailable(int count)
+	{
+		if(consumersWaiting > 0) {
+			bufferLock.lock();
+			try {
+				if(count == 1) notEmpty.signal();
+				else notEmpty.signalAll();
+			}
+			finally {
+				bufferLock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Wakes up all blocked producers and consumers in order to re-check
+	 * the state of the connection and the buffers.
+	 */
+	private void signalStateChanged()
+	{
+		bufferLock.lock();
+		try {
+			notFull.signalAll();
+			notEmpty.signalAll();
+		}
+		finally {
+			bufferLock.unlock();
+		}
+	}
+	
+	/**
+	 * Moves data from the receive buffer to the input stream.
+	 */
+	private void moveBufferToStream() throws IOException
+	{
+		stateLock.lock();
+		try {
+			RingBuffer<Serializable> buffer = toAppBuffer;
+			
+			if((buffer != null) && (toAppStream != null)) {
+				Serializable data = buffer.poll();
+				
+				while(data != null) {
+					toAppStream.addToBuffer(data);
+					data = buffer.poll();
+				}
+				
+				signalSpaceAvailable();
+			}
+		}
+		finally {
+			stateLock.unlock();
+		}
+	}
+	
 	/**
 	 * Empties all buffers and removes all streams
 	 */
-	protected synchronized void cleanup()
+	protected void cleanup()
 	{
+		stateLock.lock();
 		try {
-			if(toAppStream != null) toAppStream.close();
-			if(toNetStream != null) toNetStream.close();
+			try {
+				if(toAppStream != null) toAppStream.close();
+				if(toNetStream != null) toNetStream.close();
+				
+				toAppStream = null;
+				toNetStream = null;
+				streamFilled = false;
+			} catch (IOException tExc) {
+				// ignore exception
+			}
+			
+			toAppBuffer = null;
+			terminated = true;
 			
-			toAppStream = null;
-			toNetStream = null;
-		} catch (IOException tExc) {
-			// ignore exception
+			// wake up blocked producer and consumers
+			signalStateChanged();
+		}
+		finally {
+			stateLock.unlock();
 		}
-		
-		toAppBuffer = null;
 	}
 	
 	/**
@@ -236,10 +867,60 @@ public abstract class BaseConnectionEndPoint extends BaseEventSource implements
 		close();
 	}
 	
+	/**
+	 * Reaction of {@link BaseConnectionEndPoint#storeDataForApp(Serializable)}
+	 * if the receive buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Block lower layer until application reads data (back pressure)
+		 */
+		BLOCK,
+		/**
+		 * Drop oldest data in buffer in order to store new one
+		 */
+		DROP_OLDEST,
+		/**
+		 * Drop new data
+		 */
+		DROP_NEWEST,
+		/**
+		 * Drop new data and inform application with {@link ServiceDegradationEvent}
+		 */
+		SIGNAL_DEGRADATION
+	};
+	
+	public static final int DEFAULT_RECEIVE_BUFFER_CAPACITY = 4096;
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.BLOCK;
+	
 	private Name bindingName;
+	/* opt-in via setCodec; null keeps the plain stream encoding */
+	private volatile Codec codec = null;
+	
+	/* configuration of receive buffer */
+	private int receiveBufferCapacity = DEFAULT_RECEIVE_BUFFER_CAPACITY;
+	private volatile OverflowPolicy overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+	
+	/* only accessed by producer */
+	private boolean degradationSignaled = false;
+	
+	/* synchronization of buffer and stream (re-)configuration */
+	private final ReentrantLock stateLock = new ReentrantLock();
+	
+	/* serializes writes via output stream */
+	private final ReentrantLock writeLock = new ReentrantLock();
+	
+	/* synchronization for blocking producer and consumers */
+	private final ReentrantLock bufferLock = new ReentrantLock();
+	private final Condition notFull = bufferLock.newCondition();
+	private final Condition notEmpty = bufferLock.newCondition();
+	private volatile boolean producerWaiting = false;
+	private volatile int consumersWaiting = 0; /* modified while holding bufferLock */
+	private volatile boolean terminated = false; /* closed, disconnected or failed until connected again */
 	
 	/* lazy created buffers/streams */
-	private LinkedList<Serializable> toAppBuffer;
-	private ConnectionEndPointInputStream toAppStream;
+	private volatile RingBuffer<Serializable> toAppBuffer;
+	private volatile ConnectionEndPointInputStream toAppStream;
+	private volatile boolean streamFilled = false; /* buffer content was moved to toAppStream */
 	private OutputStream toNetStream;
 }
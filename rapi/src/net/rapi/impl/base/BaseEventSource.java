@@ -16,103 +16,238 @@
  *****************************************************************************/
 package net.rapi.impl.base;
 
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.rapi.EventSource;
+import net.rapi.events.ClosedEvent;
+import net.rapi.events.ConnectedEvent;
+import net.rapi.events.DataAvailableEvent;
+import net.rapi.events.DisconnectedEvent;
+import net.rapi.events.ErrorEvent;
 import net.rapi.events.Event;
+import net.rapi.events.NewConnectionEvent;
+import net.rapi.events.ServiceDegradationEvent;
 
 
 /**
  * Base class that provides storing and retrieving of events.
+ * 
+ * The listeners are stored in a copy-on-write list. Thus, the delivery
+ * of events does not require locking and (un)registrations of listeners
+ * do not block the delivery. Locking is just required for storing events
+ * while no listener is registered and for relaying them later on.
+ * 
+ * The number of stored events is bounded (see {@link #setEventBacklogLimit})
+ * and events of the same type are coalesced (see {@link #coalesceEvents}).
+ * State transitions are kept regardless of the bound. Internal listeners
+ * (see {@link #registerInternalListener}) receive the stored events
+ * without consuming them.
+ * The lock is a {@link ReentrantLock} instead of a monitor, since inline
+ * listeners might block while it is held during relaying.
  */
 public abstract class BaseEventSource implements EventSource
 {
 	@Override
-	public synchronized void registerListener(EventListener observer)
+	public void registerListener(EventListener observer)
 	{
-		if(observer != null) {
-			if(observers == null) observers = new LinkedList<EventListener>();
-			
-			synchronized (observers) {
+		eventLock.lock();
+		try {
+			if(observer != null) {
 				observers.add(observer);
-			}
+				externalObservers++;
+			
+				// relay events occurred previously to new listener;
+				// internal listeners had received them already
+				if(events != null) {
+					while(!events.isEmpty()) {
+						dispatch(events.removeFirst(), observer, false);
+					}
 			
-			// relay events occurred previously to new listener
-			if(events != null) {
-				while(!events.isEmpty()) {
-					notifyObservers(events.removeFirst());
+					events = null;
 				}
+			}
+		}
+		finally {
+			eventLock.unlock();
+		}
+	}
+	
+	/**
+	 * Registers a listener of the implementation (e.g. a tracker of a
+	 * connection setup). In contrast to {@link #registerListener}, the
+	 * events occurred previously are relayed to the listener without
+	 * consuming them. They are kept until the first listener of the
+	 * application registers.
+	 * 
+	 * @param observer Internal listener
+	 */
+	public void registerInternalListener(EventListener observer)
+	{
+		eventLock.lock();
+		try {
+			if(observer != null) {
+				observers.add(observer);
+				internalObservers.add(observer);
 				
-				events = null;
+				if(events != null) {
+					for(Event event : events) {
+						dispatch(event, observer, false);
+					}
+				}
 			}
 		}
+		finally {
+			eventLock.unlock();
+		}
+	}
+	
+	/**
+	 * Registers an internal listener at an event source. Falls back to
+	 * {@link EventSource#registerListener} if the source does not
+	 * distinguish internal listeners.
+	 */
+	static void registerInternalListener(EventSource source, EventListener observer)
+	{
+		if(source instanceof BaseEventSource) {
+			((BaseEventSource) source).registerInternalListener(observer);
+		} else {
+			source.registerListener(observer);
+		}
 	}
 
 	@Override
-	public synchronized boolean unregisterListener(EventListener observer)
+	public boolean unregisterListener(EventListener observer)
 	{
-		boolean res = false;
+		// running deliveries iterate over a snapshot and are not affected
+		boolean removed = observers.remove(observer);
 		
-		if(observers != null) {
-			synchronized (observers) {
-				// are we currently in a list iteration process?
-				if(loopCounter > 0) {
-					// yes! -> remove observer later
-					res = observers.contains(observer);
-					if(res) {
-						//Logging.getInstance().trace(this, "Store delayed removal " +observer);
-						
-						if(observersDeletion == null) observersDeletion = new LinkedList<EventSource.EventListener>();
-						
-						observersDeletion.add(observer);
-					}
-				} else {
-					// no! -> remove it immediately
-					res = observers.remove(observer);
-				}
+		if(removed && !internalObservers.remove(observer)) {
+			eventLock.lock();
+			try {
+				externalObservers--;
+			}
+			finally {
+				eventLock.unlock();
 			}
 		}
-
-		return res;
+		
+		return removed;
 	}
 
+	/**
+	 * Selects the strategy for delivering events to the listeners of this
+	 * event source. Default is {@link EventDispatcher#INLINE}.
+	 * 
+	 * @param dispatcher Delivery strategy ({@code != null})
+	 */
+	public void setEventDispatcher(EventDispatcher dispatcher)
+	{
+		eventLock.lock();
+		try {
+			if(dispatcher == null) throw new IllegalArgumentException(this +" - Event dispatcher is missing.");
+			
+			eventExecutor = dispatcher.createExecutor();
+		}
+		finally {
+			eventLock.unlock();
+		}
+	}
+	
+	/**
+	 * Informs all listeners about an event. Depending on the
+	 * {@link EventDispatcher}, the listeners are called synchronously
+	 * or asynchronously. If no listener of the application is registered,
+	 * the event is stored until the first one is registered.
+	 */
 	public void notifyObservers(Event event)
 	{
-		if(observers != null) {
-			synchronized (observers) {
-				if(!observers.isEmpty()) {
-					loopCounter++;
-					
-					for(EventListener obs : observers) {
-						try {
-							obs.eventOccured(event);
-						}
-						catch(Error err) {
-							notifyFailure(err, obs);
-						}
-						catch(Exception exc) {
-							notifyFailure(exc, obs);
-						}
+		// fast path without locking if there are listeners and no stored events
+		if((events == null) && (externalObservers > 0)) {
+			dispatch(event, null, true);
+		} else {
+			// decide about storing while holding the lock in order
+			// to preserve the order with the relayed events
+			eventLock.lock();
+			try {
+				if((events == null) && (externalObservers > 0)) {
+					dispatch(event, null, true);
+				} else {
+					// inform internal listeners without consuming the event
+					if(!observers.isEmpty()) {
+						dispatch(event, null, false);
 					}
 					
-					loopCounter--;
-					
-					// do we have to delete an observer after the iteration?
-					if((loopCounter <= 0) && (observersDeletion != null)) {
-						//Logging.getInstance().trace(this, "Delayed removal of " +observersDeletion.size() +" observers");
-						
-						for(EventListener obs : observersDeletion) {
-							observers.remove(obs);
-						}
-						
-						observersDeletion = null;
-					}
-				} else {
 					storeEvent(event);
 				}
 			}
+			finally {
+				eventLock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Delivers an event to the listeners via the executor of the
+	 * {@link EventDispatcher}.
+	 * 
+	 * @param listener Single listener receiving the event; {@code null} for all listeners
+	 * @param store Store event if all listeners had been removed in the meantime
+	 */
+	private void dispatch(final Event event, final EventListener listener, final boolean store)
+	{
+		Executor executor = eventExecutor;
+		
+		if(executor == null) {
+			deliver(event, listener, store);
 		} else {
-			storeEvent(event);
+			executor.execute(new Runnable() {
+				@Override
+				public void run()
+				{
+					deliver(event, listener, store);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Calls the listeners for an event or stores the event if all
+	 * listeners had been removed in the meantime.
+	 */
+	private void deliver(Event event, EventListener listener, boolean store)
+	{
+		boolean delivered = false;
+		
+		for(EventListener obs : observers) {
+			if((listener != null) && (obs != listener)) continue;
+			
+			delivered = true;
+			
+			try {
+				obs.eventOccured(event);
+			}
+			catch(Error err) {
+				notifyFailure(err, obs);
+			}
+			catch(Exception exc) {
+				notifyFailure(exc, obs);
+			}
+		}
+		
+		if(!delivered && store) {
+			eventLock.lock();
+			try {
+				storeEvent(event);
+			}
+			finally {
+				eventLock.unlock();
+			}
 		}
 	}
 	
@@ -126,17 +261,132 @@ public abstract class BaseEventSource implements EventSource
 	protected abstract void notifyFailure(Throwable failure, EventListener listener);
 	
 	/**
-	 * Stores events until listener is registered
+	 * Limits the number of events stored while no listener is registered.
+	 * If the limit is exceeded, the oldest stored data events are dropped
+	 * first, then other events. State transitions are never dropped (see
+	 * {@link #isStateTransition}).
+	 * 
+	 * @param limit Maximum number of stored events (> 0)
+	 */
+	public void setEventBacklogLimit(int limit)
+	{
+		eventLock.lock();
+		try {
+			if(limit <= 0) throw new IllegalArgumentException(this +" - Invalid event backlog limit " +limit);
+			
+			backlogLimit = limit;
+		}
+		finally {
+			eventLock.unlock();
+		}
+	}
+	
+	/**
+	 * Merges an event with an event of the same class, which is already stored
+	 * while no listener is registered. Derived classes can override it in order
+	 * to coalesce further event types. By default, {@link DataAvailableEvent}s
+	 * are merged by summing up their counts and the latest
+	 * {@link ServiceDegradationEvent} replaces the stored one.
+	 * 
+	 * @param stored Event already stored
+	 * @param event New event with the same class as {@code stored}
+	 * @return Event replacing the stored one or {@code null} if events can not be merged
+	 */
+	protected Event coalesceEvents(Event stored, Event event)
+	{
+		if(event instanceof DataAvailableEvent) {
+			return new DataAvailableEvent(event.getSource(), ((DataAvailableEvent) stored).getCount() +((DataAvailableEvent) event).getCount());
+		}
+		
+		if(event instanceof ServiceDegradationEvent) {
+			return event;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Indicates if an event reports a change of the state of the event
+	 * source. Such events are never dropped from the stored events, since
+	 * a listener registering later on can not reconstruct them. Derived
+	 * classes can override it in order to protect further event types.
+	 * 
+	 * @param event Stored event
+	 * @return {@code true} if the event must not be dropped
+	 */
+	protected boolean isStateTransition(Event event)
+	{
+		return (event instanceof ConnectedEvent) || (event instanceof DisconnectedEvent)
+			|| (event instanceof ClosedEvent) || (event instanceof ErrorEvent)
+			|| (event instanceof NewConnectionEvent);
+	}
+	
+	/**
+	 * Stores events until listener is registered.
+	 * Caller has to hold the event lock.
 	 */
-	private synchronized void storeEvent(Event event)
+	private void storeEvent(Event event)
 	{
 		if(events == null) events = new LinkedList<Event>();
 		
+		// try to merge with latest stored event of same type
+		ListIterator<Event> iter = events.listIterator(events.size());
+		while(iter.hasPrevious()) {
+			Event stored = iter.previous();
+			
+			if(stored.getClass().equals(event.getClass())) {
+				Event merged = coalesceEvents(stored, event);
+				
+				if(merged != null) {
+					iter.set(merged);
+					return;
+				} else {
+					break;
+				}
+			}
+		}
+		
 		events.addLast(event);
+		
+		// drop oldest events if limit is exceeded; data events first
+		if(events.size() > backlogLimit) {
+			dropEvents(true);
+			dropEvents(false);
+		}
+	}
+	
+	/**
+	 * Drops the oldest stored events until the limit is reached.
+	 * Caller has to hold the event lock.
+	 * 
+	 * @param dataOnly {@code true} if just data events are dropped; otherwise all events except state transitions
+	 */
+	private void dropEvents(boolean dataOnly)
+	{
+		Iterator<Event> iter = events.iterator();
+		
+		while((events.size() > backlogLimit) && iter.hasNext()) {
+			Event stored = iter.next();
+			
+			if(dataOnly) {
+				if((stored instanceof DataAvailableEvent) || (stored instanceof ServiceDegradationEvent)) {
+					iter.remove();
+				}
+			} else {
+				if(!isStateTransition(stored)) {
+					iter.remove();
+				}
+			}
+		}
 	}
 
-	private LinkedList<EventListener> observers = null;
-	private LinkedList<Event> events = null;
-	private LinkedList<EventListener> observersDeletion = null;
-	private int loopCounter = 0;
+	public static final int DEFAULT_EVENT_BACKLOG_LIMIT = 64;
+	
+	private final ReentrantLock eventLock = new ReentrantLock();
+	private final CopyOnWriteArrayList<EventListener> observers = new CopyOnWriteArrayList<EventListener>();
+	private final CopyOnWriteArraySet<EventListener> internalObservers = new CopyOnWriteArraySet<EventListener>();
+	private volatile int externalObservers = 0; /* modified while holding eventLock */
+	private volatile LinkedList<Event> events = null;
+	private int backlogLimit = DEFAULT_EVENT_BACKLOG_LIMIT;
+	private volatile Executor eventExecutor = null; /* null for inline delivery */
 }
@@ -0,0 +1,422 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import net.rapi.Codec;
+import net.rapi.CodecException;
+import net.rapi.Description;
+import net.rapi.ImmutableDescription;
+import net.rapi.properties.Property;
+
+
+/**
+ * Compact binary codec for byte arrays, boxed primitives, strings,
+ * {@link Description}s and the properties of {@link net.rapi.properties}.
+ * 
+ * Each object is encoded with a one byte type tag followed by its value.
+ * Properties and descriptions use the encoding of {@link DescriptionCodec}.
+ * Integral numbers and lengths are encoded as variable length integers
+ * (7 bit per byte; negative numbers via zig-zag encoding). Thus, small
+ * values require just one or two bytes. Strings are encoded in UTF-8.
+ */
+public class BinaryCodec implements Codec
+{
+	/**
+	 * The codec is stateless; the instance can be shared.
+	 */
+	public static final BinaryCodec INSTANCE = new BinaryCodec();
+	
+	
+	@Override
+	public boolean canEncode(Object data)
+	{
+		return getTag(data) != UNSUPPORTED;
+	}
+	
+	@Override
+	public int getEncodedSize(Object data) throws CodecException
+	{
+		switch(getTag(data)) {
+		case NULL:
+		case BOOLEAN_FALSE:
+		case BOOLEAN_TRUE:
+			return 1;
+		case BYTES:
+			int length = ((byte[]) data).length;
+			return 1 +getVarIntSize(length) +length;
+		case BYTE:
+			return 2;
+		case SHORT:
+			return 1 +getVarIntSize(encodeZigZag(((Short) data).intValue()));
+		case CHARACTER:
+			return 1 +getVarIntSize(((Character) data).charValue());
+		case INTEGER:
+			return 1 +getVarIntSize(encodeZigZag(((Integer) data).intValue()));
+		case LONG:
+			return 1 +getVarLongSize(encodeZigZag(((Long) data).longValue()));
+		case FLOAT:
+			return 1 +4;
+		case DOUBLE:
+			return 1 +8;
+		case STRING:
+			int utf8Length = getUTF8Length((String) data);
+			return 1 +getVarIntSize(utf8Length) +utf8Length;
+		case PROPERTY:
+			return 1 +DescriptionCodec.getPropertySize((Property) data);
+		case DESCRIPTION:
+		case IMMUTABLE_DESCRIPTION:
+			return 1 +DescriptionCodec.INSTANCE.getEncodedSize(data);
+		default:
+			throw new CodecException(this, "Type " +data.getClass() +" not supported.");
+		}
+	}
+	
+	@Override
+	public void encode(Object data, ByteBuffer buffer) throws CodecException
+	{
+		byte tag = getTag(data);
+		
+		if(tag == UNSUPPORTED) {
+			throw new CodecException(this, "Type " +data.getClass() +" not supported.");
+		}
+		
+		try {
+			buffer.put(tag);
+			
+			switch(tag) {
+			case BYTES:
+				byte[] bytes = (byte[]) data;
+				putVarInt(buffer, bytes.length);
+				buffer.put(bytes);
+				break;
+			case BYTE:
+				buffer.put(((Byte) data).byteValue());
+				break;
+			case SHORT:
+				putVarInt(buffer, encodeZigZag(((Short) data).intValue()));
+				break;
+			case CHARACTER:
+				putVarInt(buffer, ((Character) data).charValue());
+				break;
+			case INTEGER:
+				putVarInt(buffer, encodeZigZag(((Integer) data).intValue()));
+				break;
+			case LONG:
+				putVarLong(buffer, encodeZigZag(((Long) data).longValue()));
+				break;
+			case FLOAT:
+				buffer.putFloat(((Float) data).floatValue());
+				break;
+			case DOUBLE:
+				buffer.putDouble(((Double) data).doubleValue());
+				break;
+			case STRING:
+				byte[] utf8 = ((String) data).getBytes(UTF8);
+				putVarInt(buffer, utf8.length);
+				buffer.put(utf8);
+				break;
+			case PROPERTY:
+				DescriptionCodec.encodeProperty((Property) data, buffer);
+				break;
+			case DESCRIPTION:
+			case IMMUTABLE_DESCRIPTION:
+				DescriptionCodec.INSTANCE.encode(data, buffer);
+				break;
+			default:
+				// tag is sufficient
+			}
+		}
+		catch(BufferOverflowException exc) {
+			throw new CodecException(this, "Buffer too small for encoding " +data, exc);
+		}
+	}
+	
+	@Override
+	public Object decode(ByteBuffer buffer) throws CodecException
+	{
+		try {
+			byte tag = buffer.get();
+			
+			switch(tag) {
+			case NULL:
+				return null;
+			case BYTES:
+				byte[] bytes = new byte[getLength(buffer)];
+				buffer.get(bytes);
+				return bytes;
+			case BOOLEAN_FALSE:
+				return Boolean.FALSE;
+			case BOOLEAN_TRUE:
+				return Boolean.TRUE;
+			case BYTE:
+				return buffer.get();
+			case SHORT:
+				return (short) decodeZigZag(getVarInt(buffer));
+			case CHARACTER:
+				return (char) getVarInt(buffer);
+			case INTEGER:
+				return decodeZigZag(getVarInt(buffer));
+			case LONG:
+				return decodeZigZag(getVarLong(buffer));
+			case FLOAT:
+				return buffer.getFloat();
+			case DOUBLE:
+				return buffer.getDouble();
+			case STRING:
+				return getString(buffer, getLength(buffer));
+			case PROPERTY:
+				return DescriptionCodec.decodeProperty(buffer);
+			case DESCRIPTION:
+				return DescriptionCodec.INSTANCE.decode(buffer);
+			case IMMUTABLE_DESCRIPTION:
+				return ImmutableDescription.of(DescriptionCodec.INSTANCE.decode(buffer));
+			default:
+				throw new CodecException(this, "Unknown type tag " +tag);
+			}
+		}
+		catch(BufferUnderflowException exc) {
+			throw new CodecException(this, "Encoded data truncated.", exc);
+		}
+	}
+	
+	/**
+	 * @return Tag for type of data object or {@link #UNSUPPORTED}
+	 */
+	private static byte getTag(Object data)
+	{
+		if(data == null) return NULL;
+		
+		// check exact classes, since derived classes might have additional state
+		Class<?> clazz = data.getClass();
+		if(clazz == byte[].class) return BYTES;
+		if(clazz == String.class) return STRING;
+		if(clazz == Integer.class) return INTEGER;
+		if(clazz == Long.class) return LONG;
+		if(clazz == Boolean.class) return ((Boolean) data).booleanValue() ? BOOLEAN_TRUE : BOOLEAN_FALSE;
+		if(clazz == Double.class) return DOUBLE;
+		if(clazz == Float.class) return FLOAT;
+		if(clazz == Byte.class) return BYTE;
+		if(clazz == Short.class) return SHORT;
+		if(clazz == Character.class) return CHARACTER;
+		if((data instanceof Property) && DescriptionCodec.isRegistered((Property) data)) return PROPERTY;
+		if((clazz == Description.class) && DescriptionCodec.INSTANCE.canEncode(data)) return DESCRIPTION;
+		if((clazz == ImmutableDescription.class) && DescriptionCodec.INSTANCE.canEncode(data)) return IMMUTABLE_DESCRIPTION;
+		
+		return UNSUPPORTED;
+	}
+	
+	/**
+	 * Reads a length field and checks it against the remaining bytes.
+	 */
+	private int getLength(ByteBuffer buffer) throws CodecException
+	{
+		int length = getVarInt(buffer);
+		
+		if((length < 0) || (length > buffer.remaining())) {
+			throw new CodecException(this, "Invalid length " +length +" with " +buffer.remaining() +" remaining bytes.");
+		}
+		
+		return length;
+	}
+	
+	private static String getString(ByteBuffer buffer, int length)
+	{
+		if(buffer.hasArray()) {
+			// decode directly from backing array
+			String res = new String(buffer.array(), buffer.arrayOffset() +buffer.position(), length, UTF8);
+			buffer.position(buffer.position() +length);
+			return res;
+		} else {
+			byte[] utf8 = new byte[length];
+			buffer.get(utf8);
+			return new String(utf8, UTF8);
+		}
+	}
+	
+	/**
+	 * Calculates the length of the UTF-8 representation of a string without
+	 * encoding it. Unpaired surrogates are counted as one byte, since they
+	 * are replaced by '?' during encoding.
+	 */
+	public static int getUTF8Length(String value)
+	{
+		int length = 0;
+		int count = value.length();
+		
+		for(int i = 0; i < count; i++) {
+			char c = value.charAt(i);
+			
+			if(c < 0x80) {
+				length++;
+			}
+			else if(c < 0x800) {
+				length += 2;
+			}
+			else if(Character.isHighSurrogate(c) && (i +1 < count) && Character.isLowSurrogate(value.charAt(i +1))) {
+				length += 4;
+				i++;
+			}
+			else if((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE)) {
+				length++;
+			}
+			else {
+				length += 3;
+			}
+		}
+		
+		return length;
+	}
+	
+	/**
+	 * @return Number of bytes required for an unsigned variable length integer
+	 */
+	public static int getVarIntSize(int value)
+	{
+		if((value & (0xFFFFFFFF << 7)) == 0) return 1;
+		if((value & (0xFFFFFFFF << 14)) == 0) return 2;
+		if((value & (0xFFFFFFFF << 21)) == 0) return 3;
+		if((value & (0xFFFFFFFF << 28)) == 0) return 4;
+		return 5;
+	}
+	
+	/**
+	 * @return Number of bytes required for an unsigned variable length long
+	 */
+	public static int getVarLongSize(long value)
+	{
+		int size = 1;
+		
+		while((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Writes an unsigned variable length integer (7 bit per byte, least
+	 * significant group first, MSB set if further bytes follow).
+	 */
+	public static void putVarInt(ByteBuffer buffer, int value)
+	{
+		while((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		
+		buffer.put((byte) value);
+	}
+	
+	public static void putVarLong(ByteBuffer buffer, long value)
+	{
+		while((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		
+		buffer.put((byte) value);
+	}
+	
+	/**
+	 * Reads an unsigned variable length integer.
+	 * 
+	 * @throws CodecException If encoding exceeds five bytes
+	 */
+	public static int getVarInt(ByteBuffer buffer) throws CodecException
+	{
+		int value = 0;
+		
+		for(int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			
+			if((b & 0x80) == 0) return value;
+		}
+		
+		throw new CodecException("Malformed variable length integer.");
+	}
+	
+	public static long getVarLong(ByteBuffer buffer) throws CodecException
+	{
+		long value = 0;
+		
+		for(int shift = 0; shift < 70; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			
+			if((b & 0x80) == 0) return value;
+		}
+		
+		throw new CodecException("Malformed variable length long.");
+	}
+	
+	/**
+	 * Maps signed integers to unsigned ones in order to encode small
+	 * negative numbers with few bytes (0 -> 0, -1 -> 1, 1 -> 2, ...).
+	 */
+	public static int encodeZigZag(int value)
+	{
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	public static int decodeZigZag(int value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	public static long encodeZigZag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+	
+	public static long decodeZigZag(long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName();
+	}
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/* type tags */
+	private static final byte UNSUPPORTED = -1;
+	private static final byte NULL = 0;
+	private static final byte BYTES = 1;
+	private static final byte BOOLEAN_FALSE = 2;
+	private static final byte BOOLEAN_TRUE = 3;
+	private static final byte BYTE = 4;
+	private static final byte SHORT = 5;
+	private static final byte CHARACTER = 6;
+	private static final byte INTEGER = 7;
+	private static final byte LONG = 8;
+	private static final byte FLOAT = 9;
+	private static final byte DOUBLE = 10;
+	private static final byte STRING = 11;
+	private static final byte PROPERTY = 16;
+	private static final byte DESCRIPTION = 17;
+	private static final byte IMMUTABLE_DESCRIPTION = 18;
+}
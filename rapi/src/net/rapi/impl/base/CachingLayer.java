@@ -0,0 +1,395 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.rapi.Binding;
+import net.rapi.Connection;
+import net.rapi.Description;
+import net.rapi.EventSource.EventListener;
+import net.rapi.Identity;
+import net.rapi.ImmutableDescription;
+import net.rapi.Layer;
+import net.rapi.Name;
+import net.rapi.NeighborName;
+import net.rapi.NetworkException;
+import net.rapi.events.Event;
+import net.rapi.events.LayerSetEvent;
+import net.rapi.events.NeighborDeltaEvent;
+import net.rapi.events.PeerInformationEvent;
+import net.rapi.events.ServiceDegradationEvent;
+
+
+/**
+ * Decorator for a {@link Layer}, which caches the results of
+ * {@link Layer#getCapabilities}. All other methods are delegated to
+ * the decorated layer.
+ * 
+ * Cached capabilities expire after a time to live and the least recently
+ * used entries are evicted if the cache is full. The cache is invalidated
+ * if the decorated layer signals changes via {@link PeerInformationEvent}s,
+ * {@link NeighborDeltaEvent}s, {@link ServiceDegradationEvent}s or
+ * {@link LayerSetEvent}s.
+ * 
+ * The capabilities are cached as {@link ImmutableDescription}s. Callers
+ * get a mutable copy, as from the decorated layer.
+ */
+public class CachingLayer implements Layer
+{
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+	public static final long DEFAULT_TIME_TO_LIVE_MSEC = 10000;
+	
+	
+	public CachingLayer(Layer layer)
+	{
+		this(layer, DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE_MSEC, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @param layer Decorated layer ({@code != null})
+	 * @param maxEntries Maximum number of cached capabilities (> 0)
+	 * @param timeToLive Maximum age of cached capabilities
+	 * @param unit Unit of the time to live
+	 */
+	public CachingLayer(Layer layer, final int maxEntries, long timeToLive, TimeUnit unit)
+	{
+		if(layer == null) throw new IllegalArgumentException(this.getClass() +" - Decorated layer is missing.");
+		if(maxEntries <= 0) throw new IllegalArgumentException(this.getClass() +" - Invalid maximum number of entries " +maxEntries);
+		
+		this.layer = layer;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		
+		cache = new LinkedHashMap<Key, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = -3361460453167562849L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+		
+		// do not consume the events stored for the application
+		BaseEventSource.registerInternalListener(layer, invalidationListener);
+	}
+	
+	@Override
+	public Description getCapabilities(Name name, Description requirements) throws NetworkException
+	{
+		// lookup with the original description in order to avoid copying it
+		Key key = new Key(name, requirements);
+		long now = System.nanoTime();
+		int currentGeneration;
+		ImmutableDescription cached = null;
+		
+		synchronized (cache) {
+			CacheEntry entry = cache.get(key);
+			
+			if(entry != null) {
+				if(now -entry.created < timeToLiveNanos) {
+					cached = entry.capabilities;
+				} else {
+					cache.remove(key);
+				}
+			}
+			
+			currentGeneration = generation;
+		}
+		
+		if(cached != null) {
+			// copy outside of the lock; callers may modify the result
+			hits.incrementAndGet();
+			return cached.toMutable();
+		}
+		
+		misses.incrementAndGet();
+		Description result = layer.getCapabilities(name, requirements);
+		ImmutableDescription capabilities = ImmutableDescription.of(result);
+		
+		if(capabilities != null) {
+			// store immutable copy since the caller might modify its description
+			key = new Key(name, ImmutableDescription.of(requirements));
+			
+			synchronized (cache) {
+				// do not store results computed before an invalidation
+				if(currentGeneration == generation) {
+					cache.put(key, new CacheEntry(capabilities, now));
+				}
+			}
+		}
+		
+		// cache stores a copy; thus, caller can keep the result of the layer
+		if(result instanceof ImmutableDescription) {
+			return capabilities.toMutable();
+		} else {
+			return result;
+		}
+	}
+	
+	/**
+	 * Removes all cached capabilities.
+	 */
+	public void invalidate()
+	{
+		synchronized (cache) {
+			cache.clear();
+			generation++;
+		}
+	}
+	
+	/**
+	 * Removes the cached capabilities for a name and the ones
+	 * determined without a name.
+	 */
+	public void invalidate(Name name)
+	{
+		synchronized (cache) {
+			Iterator<Key> keys = cache.keySet().iterator();
+			
+			while(keys.hasNext()) {
+				Name cachedName = keys.next().name;
+				
+				if((cachedName == null) || cachedName.equals(name)) {
+					keys.remove();
+				}
+			}
+			
+			generation++;
+		}
+	}
+	
+	/**
+	 * Removes the cached capabilities for multiple names and the ones
+	 * determined without a name.
+	 */
+	public void invalidate(Collection<? extends Name> names)
+	{
+		synchronized (cache) {
+			Iterator<Key> keys = cache.keySet().iterator();
+			
+			while(keys.hasNext()) {
+				Name cachedName = keys.next().name;
+				
+				if((cachedName == null) || names.contains(cachedName)) {
+					keys.remove();
+				}
+			}
+			
+			generation++;
+		}
+	}
+	
+	/**
+	 * @return Number of requests answered from cache
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+	
+	/**
+	 * @return Number of requests forwarded to the decorated layer
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+	
+	/**
+	 * @return Number of cached capabilities (including expired ones)
+	 */
+	public int getCacheSize()
+	{
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+	
+	/**
+	 * @return Decorated layer
+	 */
+	public Layer getLayer()
+	{
+		return layer;
+	}
+	
+	@Override
+	public LayerStatus getStatus()
+	{
+		return layer.getStatus();
+	}
+
+	@Override
+	public Binding bind(Connection parentSocket, Name name, Description requirements, Identity identity)
+	{
+		return layer.bind(parentSocket, name, requirements, identity);
+	}
+
+	@Override
+	public Connection connect(Name name, Description requirements, Identity requester)
+	{
+		return layer.connect(name, requirements, requester);
+	}
+
+	@Override
+	public boolean isKnown(Name name)
+	{
+		return layer.isKnown(name);
+	}
+
+	@Override
+	public Iterable<NeighborName> getNeighbors(Name namePrefix) throws NetworkException
+	{
+		return layer.getNeighbors(namePrefix);
+	}
+
+	@Override
+	public void registerListener(EventListener observer)
+	{
+		layer.registerListener(observer);
+	}
+
+	@Override
+	public boolean unregisterListener(EventListener observer)
+	{
+		return layer.unregisterListener(observer);
+	}
+	
+	/**
+	 * Stops the invalidation of the cache and removes all entries.
+	 * Has to be called if the decorator is not used any longer.
+	 */
+	public void close()
+	{
+		layer.unregisterListener(invalidationListener);
+		invalidate();
+	}
+	
+	private final EventListener invalidationListener = new EventListener() {
+		@Override
+		public void eventOccured(Event event) throws Exception
+		{
+			if(event instanceof PeerInformationEvent) {
+				NeighborName peer = ((PeerInformationEvent) event).getPeerName();
+				
+				if(peer != null) {
+					invalidate(peer.getBindingName());
+				} else {
+					invalidate();
+				}
+			}
+			else if(event instanceof NeighborDeltaEvent) {
+				NeighborDeltaEvent delta = (NeighborDeltaEvent) event;
+				HashSet<Name> names = new HashSet<Name>();
+				
+				for(NeighborName peer : delta.getAppeared()) {
+					names.add(peer.getBindingName());
+				}
+				for(NeighborName peer : delta.getDisappeared()) {
+					names.add(peer.getBindingName());
+				}
+				
+				invalidate(names);
+			}
+			else if((event instanceof ServiceDegradationEvent) || (event instanceof LayerSetEvent)) {
+				invalidate();
+			}
+		}
+	};
+	
+	/**
+	 * Cache key for a name and requirements.
+	 */
+	private static class Key
+	{
+		public Key(Name name, Description requirements)
+		{
+			this.name = name;
+			this.requirements = requirements;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			int hash = 0;
+			
+			if(name != null) hash = name.hashCode();
+			if(requirements != null) hash = 31 *hash +requirements.hashCode();
+			
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if(obj == this) return true;
+			
+			if(obj instanceof Key) {
+				Key other = (Key) obj;
+				
+				if(name == null) {
+					if(other.name != null) return false;
+				} else {
+					if(!name.equals(other.name)) return false;
+				}
+				
+				if(requirements == null) {
+					return other.requirements == null;
+				} else {
+					return requirements.equals(other.requirements);
+				}
+			} else {
+				return false;
+			}
+		}
+		
+		private final Name name;
+		private final Description requirements;
+	}
+	
+	/**
+	 * Cached capabilities with their creation time.
+	 */
+	private static class CacheEntry
+	{
+		public CacheEntry(ImmutableDescription capabilities, long created)
+		{
+			this.capabilities = capabilities;
+			this.created = created;
+		}
+		
+		private final ImmutableDescription capabilities;
+		private final long created;
+	}
+	
+	private final Layer layer;
+	private final long timeToLiveNanos;
+	private final LinkedHashMap<Key, CacheEntry> cache;
+	
+	/* incremented on each invalidation; guarded by cache */
+	private int generation = 0;
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+}
@@ -16,135 +16,336 @@
  *****************************************************************************/
 package net.rapi.impl.base;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.rapi.Codec;
+import net.rapi.CodecException;
 
 /**
  * Input stream that reads the serialized byte array of objects.
+ * 
+ * Without a {@link Codec}, received byte arrays are stored by reference in
+ * a queue of chunks and other data objects are converted to the UTF-8
+ * bytes of their string representation. Reading crosses the chunk
+ * boundaries. Thus, the data is copied just once from the received array
+ * into the buffer of the reader. With a codec, all data objects including
+ * byte arrays are encoded as codec frames. Thus, the reader can decode the
+ * stream with the same codec.
+ * 
+ * Reading and skipping block until at least one byte is available, the
+ * stream is closed, the read timeout expires (see {@link #setReadTimeout})
+ * or the thread is interrupted. Only a closed stream leads to an end of
+ * stream (-1), after the data received before closing was read. Blocking
+ * is done via {@link java.util.concurrent.locks} instead of monitors.
+ * Thus, blocked virtual threads do not pin their carrier thread.
  */
-public class ConnectionEndPointInputStream extends ByteArrayInputStream
+public class ConnectionEndPointInputStream extends InputStream
 {
 	public ConnectionEndPointInputStream()
 	{
-		super(new byte[0]);
+		this(null);
+	}
+	
+	/**
+	 * @param codec Codec for converting all data objects; {@code null} for raw byte arrays and strings
+	 */
+	public ConnectionEndPointInputStream(Codec codec)
+	{
+		this.codec = codec;
 	}
 
 	@Override
-	public synchronized int read()
+	public int read() throws IOException
 	{
-		int res = super.read();
-		
-		// current buffer empty?
-		if(res < 0) {
-			// blocks until buffers changed
-			res = flipBuffers();
+		lock.lock();
+		try {
+			// blocks until data is available
+			if(!waitForData()) return -1;
 			
-			// if no error occurred, read again
-			if(res >= 0) res = read();
+			int res = current[currentPos++] & 0xFF;
+			availableBytes--;
+			
+			if(currentPos >= current.length) nextChunk();
+			
+			return res;
+		}
+		finally {
+			lock.unlock();
 		}
-		
-		return res;
 	}
 	
 	@Override
-	public synchronized int read(byte recBuffer[], int offset, int length)
+	public int read(byte recBuffer[], int offset, int length) throws IOException
 	{
-		int res = super.read(recBuffer, offset, length);
-		
-		// current buffer empty?
-		if(res < 0) {
-			// blocks until buffers changed
-			res = flipBuffers();
+		lock.lock();
+		try {
+			if((offset < 0) || (length < 0) || (length > recBuffer.length -offset)) {
+				throw new IndexOutOfBoundsException();
+			}
 			
-			// if no error occurred, read again
-			if(res >= 0) res = read(recBuffer, offset, length);
+			if(length == 0) return 0;
+			
+			// blocks until data is available
+			if(!waitForData()) return -1;
+			
+			// read as much as available without blocking again
+			int res = 0;
+			while((res < length) && (current != null)) {
+				int copyLength = Math.min(length -res, current.length -currentPos);
+				
+				System.arraycopy(current, currentPos, recBuffer, offset +res, copyLength);
+				currentPos += copyLength;
+				res += copyLength;
+				
+				if(currentPos >= current.length) nextChunk();
+			}
+			
+			availableBytes -= res;
+			return res;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public long skip(long n) throws IOException
+	{
+		lock.lock();
+		try {
+			if(n <= 0) return 0;
+			
+			// blocks until data is available
+			if(!waitForData()) return 0;
+			
+			// skip as much as available without blocking again
+			long res = 0;
+			while((res < n) && (current != null)) {
+				int skipLength = (int) Math.min(n -res, current.length -currentPos);
+				
+				currentPos += skipLength;
+				res += skipLength;
+				
+				if(currentPos >= current.length) nextChunk();
+			}
+			
+			availableBytes -= res;
+			return res;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int available()
+	{
+		lock.lock();
+		try {
+			return (int) Math.min(Integer.MAX_VALUE, availableBytes);
+		}
+		finally {
+			lock.unlock();
 		}
-		
-		return res;
 	}
 	
 	@Override
 	public void close() throws IOException
 	{
-		super.close();
-		
-		closed = true;
-		
-		synchronized (buffer) {
-			buffer.close();
-			buffer.notifyAll();
+		lock.lock();
+		try {
+			// stop new data but keep received chunks readable until end of stream
+			closed = true;
+			
+			dataAvailable.signalAll();
+		}
+		finally {
+			lock.unlock();
 		}
 	}
 	
 	/**
-	 * Replaces the current buffer of the input stream (which is empty)
-	 * with the current buffer of the output stream, which contains
-	 * the remaining data received via the connection.
+	 * Sets the maximum time a read or skip operation blocks.
 	 * 
-	 * @return number of new bytes; -1 on error
+	 * @param timeout Timeout; zero for infinite blocking
+	 * @param unit Unit of the timeout parameter
 	 */
-	private synchronized int flipBuffers()
+	public void setReadTimeout(long timeout, TimeUnit unit)
 	{
-		if(!closed) {
-			synchronized (buffer) {
-				// wait until 
-				while(buffer.size() <= 0) {
-					try {
-						buffer.wait();
-					}
-					catch (InterruptedException exc) {
-						// ignore it
+		lock.lock();
+		try {
+			if(timeout < 0) throw new IllegalArgumentException(this +" - Negative timeout " +timeout);
+			
+			readTimeoutNanos = unit.toNanos(timeout);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return Read timeout in milliseconds; zero if infinite
+	 */
+	public long getReadTimeout()
+	{
+		lock.lock();
+		try {
+			return TimeUnit.NANOSECONDS.toMillis(readTimeoutNanos);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Blocks until data is available or stream is closed.
+	 * Caller has to hold the lock.
+	 * 
+	 * @return {@code true} if data is available; {@code false} if stream is closed
+	 * @throws SocketTimeoutException If read timeout expired
+	 * @throws InterruptedIOException If thread was interrupted
+	 */
+	private boolean waitForData() throws InterruptedIOException
+	{
+		if((current == null) && !closed) {
+			long deadline = 0;
+			if(readTimeoutNanos > 0) deadline = System.nanoTime() +readTimeoutNanos;
+			
+			while((current == null) && !closed) {
+				try {
+					if(readTimeoutNanos > 0) {
+						long remainingNanos = deadline -System.nanoTime();
+						
+						if(remainingNanos <= 0) {
+							throw new SocketTimeoutException(this +" - Read timed out.");
+						}
+						
+						dataAvailable.awaitNanos(remainingNanos);
+					} else {
+						dataAvailable.await();
 					}
-					
-					if(!closed) return -1;
 				}
+				catch (InterruptedException exc) {
+					// restore interrupt flag for caller
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException(this +" - Interrupted while waiting for data.");
+				}
+			}
+		}
+		
+		return current != null;
+	}
+	
+	/**
+	 * Switches to the next chunk in the queue.
+	 */
+	private void nextChunk()
+	{
+		current = chunks.poll();
+		currentPos = 0;
+	}
+	
+	/**
+	 * Appends data to the stream. Without codec, byte arrays are stored by
+	 * reference. Thus, the caller MUST NOT modify them afterwards.
+	 * 
+	 * @return {@code true} if data is readable; {@code false} if it was dropped since the stream is closed or the data is empty
+	 */
+	public boolean addToBuffer(Object data) throws IOException
+	{
+		lock.lock();
+		try {
+			if((data != null) && !closed) {
+				byte[] chunk = encode(data);
 				
-				// reset read buffer with buffer from output stream
-				this.count = buffer.size();
-				this.buf = buffer.replaceBuffer();
-				this.pos = 0;
-				this.mark = 0;
+				// ignore empty chunks in order to avoid checks while reading
+				if(chunk.length > 0) {
+					if(current == null) {
+						current = chunk;
+						currentPos = 0;
+					} else {
+						chunks.addLast(chunk);
+					}
+				
+					availableBytes += chunk.length;
+					dataAvailable.signalAll();
+					return true;
+				}
 			}
-			return this.count;
-		} else {
-			return -1;
+			
+			return false;
+		}
+		finally {
+			lock.unlock();
 		}
 	}
 	
-	public void addToBuffer(Object data) throws IOException
+	/**
+	 * Converts a data object to bytes. With a codec, objects not supported
+	 * by it are encoded via their string representation in order to keep
+	 * the stream decodable.
+	 */
+	private byte[] encode(Object data) throws IOException
 	{
-		if(data != null) {
+		Codec currentCodec = codec;
+		
+		if(currentCodec == null) {
 			if(data instanceof byte[]) {
-				buffer.write((byte[]) data);
+				return (byte[]) data;
 			} else {
-				buffer.write(data.toString().getBytes());
+				return data.toString().getBytes(UTF8);
 			}
+		}
+		
+		if(!currentCodec.canEncode(data)) {
+			data = data.toString();
 			
-			synchronized (buffer) {
-				buffer.notify();
+			if(!currentCodec.canEncode(data)) {
+				return ((String) data).getBytes(UTF8);
 			}
 		}
+		
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(currentCodec.getEncodedSize(data));
+			currentCodec.encode(data, buffer);
+			return buffer.array();
+		}
+		catch(CodecException exc) {
+			throw new IOException(this +" - Can not encode " +data, exc);
+		}
 	}
 	
-	private class CEPByteArrayOutputStream extends ByteArrayOutputStream
+	/**
+	 * @param codec Codec for converting all data objects; {@code null} for raw byte arrays and strings
+	 */
+	public void setCodec(Codec codec)
 	{
-		/**
-		 * Extracts the current puffer from the output stream and replaces it
-		 * with a new empty one.
-		 * 
-		 * @return current buffer
-		 */
-		public synchronized byte[] replaceBuffer()
-		{
-			byte[] oldBuf = buf;
-			buf = new byte[Math.max(32, count)];
-			count = 0;
-			
-			return oldBuf;
-		}
+		this.codec = codec;
 	}
 	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition dataAvailable = lock.newCondition();
+	
+	private volatile Codec codec;
 	private boolean closed = false;
-	private CEPByteArrayOutputStream buffer = new CEPByteArrayOutputStream();
+	private long readTimeoutNanos = 0;
+	
+	/* chunk currently read */
+	private byte[] current = null;
+	private int currentPos = 0;
+	
+	/* received chunks not read yet */
+	private LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+	private long availableBytes = 0;
 }
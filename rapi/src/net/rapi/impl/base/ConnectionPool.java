@@ -0,0 +1,413 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.rapi.Connection;
+import net.rapi.Description;
+import net.rapi.Identity;
+import net.rapi.ImmutableDescription;
+import net.rapi.Layer;
+import net.rapi.Name;
+import net.rapi.NetworkException;
+
+
+/**
+ * Pool of connections, which are reused for subsequent requests to the
+ * same destination with the same requirements and identity. That avoids
+ * the signaling overhead for setting up a new connection per request.
+ * 
+ * Connections are leased via {@link #lease} and handed back via
+ * {@link #release}. Idle connections are checked with
+ * {@link Connection#isConnected()} before reusing them and are closed if
+ * they are idle for longer than the maximum idle time. The pool does not
+ * run its own threads. Idle connections are evicted during lease calls or
+ * by calling {@link #evictIdle()} periodically.
+ * 
+ * A released connection keeps its state for the next lessee. Thus, a lessee
+ * has to unregister all listeners it registered at the connection before
+ * releasing it. Connections read via {@link Connection#getInputStream()}
+ * can not be switched back to {@link Connection#read()}; they are closed
+ * on release instead of reusing them.
+ */
+public class ConnectionPool
+{
+	public static final int DEFAULT_MAX_PER_DESTINATION = 8;
+	public static final long DEFAULT_MAX_IDLE_TIME_MSEC = 60000;
+	
+	
+	public ConnectionPool(Layer layer)
+	{
+		this(layer, DEFAULT_MAX_PER_DESTINATION, DEFAULT_MAX_IDLE_TIME_MSEC, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @param layer Layer used for setting up new connections ({@code != null})
+	 * @param maxPerDestination Maximum number of leased and idle connections per destination (> 0)
+	 * @param maxIdleTime Maximum time a connection stays idle in the pool
+	 * @param unit Unit of the maximum idle time
+	 */
+	public ConnectionPool(Layer layer, int maxPerDestination, long maxIdleTime, TimeUnit unit)
+	{
+		if(layer == null) throw new IllegalArgumentException(this.getClass() +" - Layer is missing.");
+		if(maxPerDestination <= 0) throw new IllegalArgumentException(this.getClass() +" - Invalid maximum number of connections per destination " +maxPerDestination);
+		
+		this.layer = layer;
+		this.maxPerDestination = maxPerDestination;
+		this.maxIdleNanos = unit.toNanos(maxIdleTime);
+	}
+	
+	/**
+	 * Returns an idle connection to the destination or sets up a new one.
+	 * New connections might not be established yet when returned (see
+	 * {@link Layer#connect}). The method does not block.
+	 * 
+	 * @param name Name of the destination binding
+	 * @param requirements Requirements for the connection (might be {@code null})
+	 * @param identity Identity of the caller (might be {@code null})
+	 * @return Connection, which has to be handed back via {@link #release} or {@link #invalidate} (see class description for the state of reused connections)
+	 * @throws NetworkException If the maximum number of connections for the destination is reached or the pool is closed
+	 */
+	public Connection lease(Name name, Description requirements, Identity identity) throws NetworkException
+	{
+		LinkedList<Connection> toClose = new LinkedList<Connection>();
+		Connection conn = null;
+		boolean limitReached = false;
+		Key key;
+		
+		synchronized (this) {
+			if(closed) throw new NetworkException(this, "Pool is closed.");
+			
+			key = new Key(name, ImmutableDescription.of(requirements), identity);
+			Destination dest = destinations.get(key);
+			
+			if(dest == null) {
+				dest = new Destination();
+				destinations.put(key, dest);
+			}
+			
+			dest.evictIdle(System.nanoTime(), toClose);
+			
+			// reuse most recently used connection, which is still alive
+			while((conn == null) && !dest.idle.isEmpty()) {
+				conn = dest.idle.removeFirst().conn;
+				
+				if(!conn.isConnected()) {
+					toClose.add(conn);
+					conn = null;
+				}
+			}
+			
+			if((conn != null) || (dest.leased +dest.idle.size() < maxPerDestination)) {
+				// reserve slot; new connection is set up without holding the lock
+				dest.leased++;
+			} else {
+				limitReached = true;
+			}
+		}
+		
+		closeAll(toClose);
+		
+		if(limitReached) {
+			throw new NetworkException(this, "Maximum number of " +maxPerDestination +" connections to " +name +" reached.");
+		}
+		
+		if(conn != null) {
+			reused.incrementAndGet();
+		} else {
+			try {
+				// interned description is just the pool key; layers might modify the requirements
+				Description connRequirements = requirements;
+				if(connRequirements instanceof ImmutableDescription) {
+					connRequirements = ((ImmutableDescription) connRequirements).toMutable();
+				}
+				
+				conn = layer.connect(name, connRequirements, identity);
+			}
+			catch(RuntimeException exc) {
+				synchronized (this) {
+					releaseSlot(key);
+				}
+				throw exc;
+			}
+			
+			created.incrementAndGet();
+		}
+		
+		synchronized (this) {
+			leaseKeys.put(conn, key);
+		}
+		
+		return conn;
+	}
+	
+	/**
+	 * Hands back a connection to the pool. Connections, which are broken,
+	 * which have unread data or which are read via an input stream, are
+	 * closed instead of reusing them. The caller has to unregister its
+	 * listeners before.
+	 * 
+	 * @param conn Connection leased from this pool
+	 */
+	public void release(Connection conn)
+	{
+		boolean reusable = conn.isConnected() && (conn.available() <= 0) && !isStreamMode(conn);
+		
+		synchronized (this) {
+			Key key = leaseKeys.remove(conn);
+			if(key == null) throw new IllegalArgumentException(this +" - Connection " +conn +" is not leased from this pool.");
+			
+			Destination dest = releaseSlot(key);
+			
+			if(reusable && !closed) {
+				if(dest == null) {
+					dest = new Destination();
+					destinations.put(key, dest);
+				}
+				
+				dest.idle.addFirst(new IdleConnection(conn, System.nanoTime()));
+				return;
+			}
+		}
+		
+		conn.close();
+	}
+	
+	/**
+	 * @return If the connection delivers data via its input stream; {@code false} if the implementation does not tell
+	 */
+	private static boolean isStreamMode(Connection conn)
+	{
+		if(conn instanceof BaseConnectionEndPoint) {
+			return ((BaseConnectionEndPoint) conn).isStreamMode();
+		} else {
+			return false;
+		}
+	}
+	
+	/**
+	 * Closes a leased connection and removes it from the pool.
+	 * Has to be called if a connection turned out to be unusable.
+	 * 
+	 * @param conn Connection leased from this pool
+	 */
+	public void invalidate(Connection conn)
+	{
+		synchronized (this) {
+			Key key = leaseKeys.remove(conn);
+			if(key == null) throw new IllegalArgumentException(this +" - Connection " +conn +" is not leased from this pool.");
+			
+			releaseSlot(key);
+		}
+		
+		conn.close();
+	}
+	
+	/**
+	 * Closes all connections, which are idle for longer than the maximum idle time.
+	 * 
+	 * @return Number of closed connections
+	 */
+	public int evictIdle()
+	{
+		LinkedList<Connection> toClose = new LinkedList<Connection>();
+		
+		synchronized (this) {
+			long now = System.nanoTime();
+			Iterator<Destination> iter = destinations.values().iterator();
+			
+			while(iter.hasNext()) {
+				Destination dest = iter.next();
+				
+				dest.evictIdle(now, toClose);
+				if(dest.isUnused()) iter.remove();
+			}
+		}
+		
+		closeAll(toClose);
+		return toClose.size();
+	}
+	
+	/**
+	 * Closes all idle connections. Leased connections are closed when
+	 * they are handed back.
+	 */
+	public void close()
+	{
+		LinkedList<Connection> toClose = new LinkedList<Connection>();
+		
+		synchronized (this) {
+			closed = true;
+			
+			for(Destination dest : destinations.values()) {
+				for(IdleConnection idle : dest.idle) {
+					toClose.add(idle.conn);
+				}
+				dest.idle.clear();
+			}
+		}
+		
+		closeAll(toClose);
+	}
+	
+	/**
+	 * @return Number of leases served with a reused connection
+	 */
+	public long getReused()
+	{
+		return reused.get();
+	}
+	
+	/**
+	 * @return Number of connections set up by the pool
+	 */
+	public long getCreated()
+	{
+		return created.get();
+	}
+	
+	/**
+	 * Caller has to hold the lock of the pool.
+	 * 
+	 * @return Destination of the key or {@code null} if it was removed
+	 */
+	private Destination releaseSlot(Key key)
+	{
+		Destination dest = destinations.get(key);
+		
+		if(dest != null) {
+			dest.leased--;
+			
+			if(dest.isUnused()) {
+				destinations.remove(key);
+			}
+		}
+		
+		return dest;
+	}
+	
+	private static void closeAll(LinkedList<Connection> conns)
+	{
+		for(Connection conn : conns) {
+			conn.close();
+		}
+	}
+	
+	/**
+	 * Connections of a destination.
+	 */
+	private class Destination
+	{
+		/**
+		 * Moves all expired idle connections to a list.
+		 */
+		public void evictIdle(long now, LinkedList<Connection> toClose)
+		{
+			// oldest idle connections are at the end
+			while(!idle.isEmpty() && (now -idle.getLast().since >= maxIdleNanos)) {
+				toClose.add(idle.removeLast().conn);
+			}
+		}
+		
+		public boolean isUnused()
+		{
+			return (leased <= 0) && idle.isEmpty();
+		}
+		
+		/* most recently released first */
+		private final LinkedList<IdleConnection> idle = new LinkedList<IdleConnection>();
+		private int leased = 0;
+	}
+	
+	private static class IdleConnection
+	{
+		public IdleConnection(Connection conn, long since)
+		{
+			this.conn = conn;
+			this.since = since;
+		}
+		
+		private final Connection conn;
+		private final long since;
+	}
+	
+	/**
+	 * Key for a destination based on name, requirements and identity.
+	 */
+	private static class Key
+	{
+		public Key(Name name, ImmutableDescription requirements, Identity identity)
+		{
+			this.name = name;
+			this.requirements = requirements;
+			this.identity = identity;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			int hash = 0;
+			
+			if(name != null) hash = name.hashCode();
+			if(requirements != null) hash = 31 *hash +requirements.hashCode();
+			if(identity != null) hash = 31 *hash +identity.hashCode();
+			
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if(obj == this) return true;
+			
+			if(obj instanceof Key) {
+				Key other = (Key) obj;
+				
+				return isEqual(name, other.name) && isEqual(requirements, other.requirements) && isEqual(identity, other.identity);
+			} else {
+				return false;
+			}
+		}
+		
+		private static boolean isEqual(Object obj1, Object obj2)
+		{
+			if(obj1 == null) return obj2 == null;
+			else return obj1.equals(obj2);
+		}
+		
+		private final Name name;
+		private final ImmutableDescription requirements;
+		private final Identity identity;
+	}
+	
+	private final Layer layer;
+	private final int maxPerDestination;
+	private final long maxIdleNanos;
+	
+	private final HashMap<Key, Destination> destinations = new HashMap<Key, Destination>();
+	private final IdentityHashMap<Connection, Key> leaseKeys = new IdentityHashMap<Connection, Key>();
+	private boolean closed = false;
+	
+	private final AtomicLong reused = new AtomicLong();
+	private final AtomicLong created = new AtomicLong();
+}
@@ -0,0 +1,409 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.rapi.Binding;
+import net.rapi.Connection;
+import net.rapi.EventSource;
+import net.rapi.EventSource.EventListener;
+import net.rapi.events.ClosedEvent;
+import net.rapi.events.DataAvailableEvent;
+import net.rapi.events.DisconnectedEvent;
+import net.rapi.events.ErrorEvent;
+import net.rapi.events.Event;
+import net.rapi.events.NewConnectionEvent;
+
+
+/**
+ * Multiplexes many {@link Connection}s and {@link Binding}s for a small
+ * number of worker threads, similar to a {@link java.nio.channels.Selector}.
+ * 
+ * Endpoints are registered with a set of interesting operations. The
+ * selector listens to the events of the endpoints and queues the keys of
+ * the endpoints, which became ready. Worker threads call {@link #select}
+ * in order to get a ready key. A selected key is owned by the worker until
+ * it calls {@link Key#release()}. In the meantime, the key is not handed
+ * out to other workers. Thus, an endpoint is never processed by multiple
+ * workers concurrently. Events occurring while a key is selected are
+ * reported after its release.
+ * 
+ * Readability and acceptability are re-checked on release. If a worker
+ * did not read all data or accept all connections, the key is queued
+ * again.
+ */
+public class ConnectionSelector
+{
+	/**
+	 * Data is available at a connection ({@link DataAvailableEvent})
+	 */
+	public static final int OP_READABLE = 1;
+	/**
+	 * New incoming connection at a binding ({@link NewConnectionEvent})
+	 */
+	public static final int OP_ACCEPTABLE = 2;
+	/**
+	 * Connection was closed ({@link ClosedEvent}, {@link DisconnectedEvent})
+	 */
+	public static final int OP_CLOSED = 4;
+	/**
+	 * Error occurred ({@link ErrorEvent})
+	 */
+	public static final int OP_ERROR = 8;
+	
+	
+	/**
+	 * Registers an endpoint at the selector.
+	 * 
+	 * @param endpoint Connection or binding
+	 * @param interestOps Combination of the OP_* constants
+	 * @param attachment Optional object attached to the key
+	 * @return Key representing the registration
+	 */
+	public Key register(EventSource endpoint, int interestOps, Object attachment)
+	{
+		if(endpoint == null) throw new IllegalArgumentException(this +" - Endpoint is missing.");
+		if(closed) throw new IllegalStateException(this +" - Selector is closed.");
+		
+		Key key = new Key(endpoint, interestOps, attachment);
+		keys.add(key);
+		
+		// previous events are relayed during registration
+		endpoint.registerListener(key);
+		
+		// data or connections might be waiting already
+		key.checkLevel();
+		return key;
+	}
+	
+	/**
+	 * Blocks until an endpoint is ready.
+	 * 
+	 * @return Selected key or {@code null} if selector was closed
+	 * @throws InterruptedException If thread was interrupted while waiting
+	 */
+	public Key select() throws InterruptedException
+	{
+		while(true) {
+			Key key = ready.take();
+			
+			if(key == CLOSED_MARKER) {
+				// wake up other workers as well
+				ready.offer(CLOSED_MARKER);
+				return null;
+			}
+			
+			if(key.select()) return key;
+		}
+	}
+	
+	/**
+	 * Blocks until an endpoint is ready or the timeout expires.
+	 * 
+	 * @return Selected key or {@code null} if timeout expired or selector was closed
+	 * @throws InterruptedException If thread was interrupted while waiting
+	 */
+	public Key select(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		long deadline = System.nanoTime() +unit.toNanos(timeout);
+		
+		while(true) {
+			Key key = ready.poll(deadline -System.nanoTime(), TimeUnit.NANOSECONDS);
+			
+			if(key == null) return null;
+			
+			if(key == CLOSED_MARKER) {
+				ready.offer(CLOSED_MARKER);
+				return null;
+			}
+			
+			if(key.select()) return key;
+		}
+	}
+	
+	/**
+	 * @return Selected key or {@code null} if no endpoint is ready
+	 */
+	public Key selectNow()
+	{
+		while(true) {
+			Key key = ready.poll();
+			
+			if(key == null) return null;
+			
+			if(key == CLOSED_MARKER) {
+				ready.offer(CLOSED_MARKER);
+				return null;
+			}
+			
+			if(key.select()) return key;
+		}
+	}
+	
+	/**
+	 * @return Snapshot of all registered and not cancelled keys
+	 */
+	public Set<Key> keys()
+	{
+		// copy of the concurrent set; not affected by later (un)registrations
+		return Collections.unmodifiableSet(new HashSet<Key>(keys));
+	}
+	
+	/**
+	 * Cancels all keys and wakes up all workers blocked in {@link #select}.
+	 */
+	public void close()
+	{
+		closed = true;
+		
+		for(Key key : keys) {
+			key.cancel();
+		}
+		
+		ready.offer(CLOSED_MARKER);
+	}
+	
+	public boolean isClosed()
+	{
+		return closed;
+	}
+	
+	/**
+	 * Registration of an endpoint at a selector.
+	 */
+	public class Key implements EventListener
+	{
+		private Key(EventSource endpoint, int interestOps, Object attachment)
+		{
+			this.endpoint = endpoint;
+			this.interestOps = interestOps;
+			this.attachment = attachment;
+		}
+		
+		public EventSource getEndPoint()
+		{
+			return endpoint;
+		}
+		
+		/**
+		 * @return Endpoint as connection or {@code null} if it is not a connection
+		 */
+		public Connection getConnection()
+		{
+			if(endpoint instanceof Connection) return (Connection) endpoint;
+			else return null;
+		}
+		
+		/**
+		 * @return Endpoint as binding or {@code null} if it is not a binding
+		 */
+		public Binding getBinding()
+		{
+			if(endpoint instanceof Binding) return (Binding) endpoint;
+			else return null;
+		}
+		
+		public int getInterestOps()
+		{
+			return interestOps;
+		}
+		
+		public void setInterestOps(int interestOps)
+		{
+			this.interestOps = interestOps;
+			checkLevel();
+		}
+		
+		/**
+		 * @return Operations ready at the time of the selection
+		 */
+		public int getReadyOps()
+		{
+			return readyOps;
+		}
+		
+		public boolean isReadable()
+		{
+			return (readyOps & OP_READABLE) != 0;
+		}
+		
+		public boolean isAcceptable()
+		{
+			return (readyOps & OP_ACCEPTABLE) != 0;
+		}
+		
+		public boolean isClosed()
+		{
+			return (readyOps & OP_CLOSED) != 0;
+		}
+		
+		public boolean isError()
+		{
+			return (readyOps & OP_ERROR) != 0;
+		}
+		
+		public Object getAttachment()
+		{
+			return attachment;
+		}
+		
+		public void setAttachment(Object attachment)
+		{
+			this.attachment = attachment;
+		}
+		
+		/**
+		 * Has to be called by the worker after processing a selected key.
+		 * Afterwards, the key can be selected again.
+		 */
+		public void release()
+		{
+			state.set(IDLE);
+			checkLevel();
+			
+			if(pendingOps.get() != 0) {
+				enqueue();
+			}
+		}
+		
+		/**
+		 * Removes the registration. The endpoint itself is not closed.
+		 */
+		public void cancel()
+		{
+			if(valid) {
+				valid = false;
+				endpoint.unregisterListener(this);
+				keys.remove(this);
+			}
+		}
+		
+		public boolean isValid()
+		{
+			return valid;
+		}
+		
+		@Override
+		public void eventOccured(Event event) throws Exception
+		{
+			int op = 0;
+			
+			if(event instanceof DataAvailableEvent) op = OP_READABLE;
+			else if(event instanceof NewConnectionEvent) op = OP_ACCEPTABLE;
+			else if((event instanceof ClosedEvent) || (event instanceof DisconnectedEvent)) op = OP_CLOSED;
+			else if(event instanceof ErrorEvent) op = OP_ERROR;
+			
+			addPendingOps(op);
+		}
+		
+		/**
+		 * Marks operations as pending if they are of interest and queues the key.
+		 */
+		private void addPendingOps(int ops)
+		{
+			ops = ops & interestOps;
+			
+			if((ops != 0) && valid) {
+				int current;
+				do {
+					current = pendingOps.get();
+				}
+				while(!pendingOps.compareAndSet(current, current | ops));
+				
+				enqueue();
+			}
+		}
+		
+		/**
+		 * Adds readability and acceptability based on the state of the endpoint.
+		 */
+		private void checkLevel()
+		{
+			Connection conn = getConnection();
+			if((conn != null) && (conn.available() > 0)) {
+				addPendingOps(OP_READABLE);
+			}
+			
+			Binding binding = getBinding();
+			if((binding != null) && (binding.getNumberWaitingConnections() > 0)) {
+				addPendingOps(OP_ACCEPTABLE);
+			}
+		}
+		
+		private void enqueue()
+		{
+			if(state.compareAndSet(IDLE, QUEUED)) {
+				ready.offer(this);
+			}
+		}
+		
+		/**
+		 * Called by selector if key is removed from ready queue.
+		 * 
+		 * @return {@code true} if key is selected; {@code false} if there is nothing to do
+		 */
+		private boolean select()
+		{
+			state.set(SELECTED);
+			readyOps = pendingOps.getAndSet(0);
+			
+			if(!valid) {
+				return false;
+			}
+			
+			if(readyOps == 0) {
+				release();
+				return false;
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return getClass().getSimpleName() +"(" +endpoint +")";
+		}
+		
+		private final EventSource endpoint;
+		private volatile int interestOps;
+		private volatile Object attachment;
+		private volatile boolean valid = true;
+		
+		private final AtomicInteger pendingOps = new AtomicInteger();
+		private final AtomicInteger state = new AtomicInteger(IDLE);
+		private volatile int readyOps = 0; /* only modified by owning worker */
+	}
+	
+	/* states of a key */
+	private static final int IDLE = 0;
+	private static final int QUEUED = 1;
+	private static final int SELECTED = 2;
+	
+	private final Key CLOSED_MARKER = new Key(null, 0, null);
+	
+	private final LinkedBlockingQueue<Key> ready = new LinkedBlockingQueue<Key>();
+	private final Set<Key> keys = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+	private volatile boolean closed = false;
+}
@@ -0,0 +1,426 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.rapi.Codec;
+import net.rapi.CodecException;
+import net.rapi.Description;
+import net.rapi.properties.CommunicationTypeProperty;
+import net.rapi.properties.DatarateProperty;
+import net.rapi.properties.DelayProperty;
+import net.rapi.properties.LossRateProperty;
+import net.rapi.properties.MinMaxProperty;
+import net.rapi.properties.OrderedProperty;
+import net.rapi.properties.PriorityProperty;
+import net.rapi.properties.Property;
+import net.rapi.properties.PropertyException;
+
+
+/**
+ * Compact binary encoding for {@link Description}s used in signaling
+ * messages. In contrast to Java serialization, the encoding does not
+ * contain class names and the size can be calculated in advance (see
+ * {@link #getEncodedSize}) in order to pre-size messages.
+ * 
+ * Format (all integers as variable length integers, see {@link BinaryCodec}):
+ * <pre>
+ * version, number of properties, { type id, property payload }*
+ * </pre>
+ * 
+ * Each property class is identified by a type id from a registry (see
+ * {@link #registerPropertyType}). The ids 1 to {@link #MAX_RESERVED_TYPE_ID}
+ * are reserved for the properties of {@link net.rapi.properties}.
+ */
+public class DescriptionCodec implements Codec
+{
+	/**
+	 * Version of the encoding format
+	 */
+	public static final int VERSION = 1;
+	
+	/**
+	 * Type ids up to this value are reserved for built-in properties
+	 */
+	public static final int MAX_RESERVED_TYPE_ID = 63;
+	
+	/**
+	 * The codec is stateless; the instance can be shared.
+	 */
+	public static final DescriptionCodec INSTANCE = new DescriptionCodec();
+	
+	
+	/**
+	 * Encodes and decodes the payload of a property type.
+	 */
+	public interface PropertyEncoder<P extends Property>
+	{
+		public int getEncodedSize(P property);
+		
+		public void encode(P property, ByteBuffer buffer);
+		
+		public P decode(ByteBuffer buffer) throws CodecException;
+	}
+	
+	/**
+	 * Registers the encoding for a property class. Derived classes of
+	 * the class are not covered by the registration.
+	 * 
+	 * @param typeId Unique id of the property class on the wire (> 0)
+	 * @param propertyClass Class of the properties
+	 * @param encoder Encoding of the properties
+	 * @throws IllegalArgumentException If id or class is already registered
+	 */
+	public static synchronized <P extends Property> void registerPropertyType(int typeId, Class<P> propertyClass, PropertyEncoder<P> encoder)
+	{
+		if(typeId <= 0) throw new IllegalArgumentException("Invalid property type id " +typeId);
+		if((propertyClass == null) || (encoder == null)) throw new IllegalArgumentException("Property class or encoder missing for type id " +typeId);
+		
+		PropertyType[] types = sTypesById;
+		if((typeId < types.length) && (types[typeId] != null)) {
+			throw new IllegalArgumentException("Property type id " +typeId +" already used by " +types[typeId].propertyClass);
+		}
+		if(sTypesByClass.containsKey(propertyClass)) {
+			throw new IllegalArgumentException("Property class " +propertyClass +" already registered.");
+		}
+		
+		PropertyType type = new PropertyType(typeId, propertyClass, encoder);
+		
+		// copy-on-write for lock-free lookups
+		if(typeId >= types.length) {
+			PropertyType[] newTypes = new PropertyType[Math.max(typeId +1, types.length *2)];
+			System.arraycopy(types, 0, newTypes, 0, types.length);
+			types = newTypes;
+		} else {
+			types = types.clone();
+		}
+		types[typeId] = type;
+		
+		sTypesByClass.put(propertyClass, type);
+		sTypesById = types;
+	}
+	
+	/**
+	 * @return If the class of the property is registered
+	 */
+	public static boolean isRegistered(Property property)
+	{
+		return (property != null) && sTypesByClass.containsKey(property.getClass());
+	}
+	
+	@Override
+	public boolean canEncode(Object data)
+	{
+		if(data instanceof Description) {
+			for(Property prop : (Description) data) {
+				if(!isRegistered(prop)) return false;
+			}
+			
+			return true;
+		} else {
+			return false;
+		}
+	}
+	
+	@Override
+	public int getEncodedSize(Object data) throws CodecException
+	{
+		if(!(data instanceof Description)) {
+			throw new CodecException(this, "Type " +((data != null) ? data.getClass() : null) +" not supported.");
+		}
+		
+		Description descr = (Description) data;
+		int size = BinaryCodec.getVarIntSize(VERSION) +BinaryCodec.getVarIntSize(descr.size());
+		
+		for(Property prop : descr) {
+			size += getPropertySize(prop);
+		}
+		
+		return size;
+	}
+	
+	@Override
+	public void encode(Object data, ByteBuffer buffer) throws CodecException
+	{
+		if(!(data instanceof Description)) {
+			throw new CodecException(this, "Type " +((data != null) ? data.getClass() : null) +" not supported.");
+		}
+		
+		Description descr = (Description) data;
+		try {
+			BinaryCodec.putVarInt(buffer, VERSION);
+			BinaryCodec.putVarInt(buffer, descr.size());
+			
+			for(Property prop : descr) {
+				encodeProperty(prop, buffer);
+			}
+		}
+		catch(BufferOverflowException exc) {
+			throw new CodecException(this, "Buffer too small for encoding " +data, exc);
+		}
+	}
+	
+	/**
+	 * @return Decoded description (mutable)
+	 */
+	@Override
+	public Description decode(ByteBuffer buffer) throws CodecException
+	{
+		try {
+			int version = BinaryCodec.getVarInt(buffer);
+			if((version <= 0) || (version > VERSION)) {
+				throw new CodecException(this, "Encoding version " +version +" not supported.");
+			}
+			
+			int count = BinaryCodec.getVarInt(buffer);
+			if((count < 0) || (count > buffer.remaining())) {
+				throw new CodecException(this, "Invalid number of properties " +count);
+			}
+			
+			Description descr = new Description();
+			for(int i = 0; i < count; i++) {
+				descr.set(decodeProperty(buffer));
+			}
+			
+			return descr;
+		}
+		catch(BufferUnderflowException exc) {
+			throw new CodecException(this, "Encoded description truncated.", exc);
+		}
+	}
+	
+	/**
+	 * @return Number of bytes required for type id and payload of a property
+	 * @throws CodecException If property class is not registered
+	 */
+	public static int getPropertySize(Property property) throws CodecException
+	{
+		PropertyType type = getType(property);
+		
+		return BinaryCodec.getVarIntSize(type.typeId) +type.encoder.getEncodedSize(property);
+	}
+	
+	/**
+	 * Writes type id and payload of a property.
+	 * 
+	 * @throws CodecException If property class is not registered
+	 */
+	public static void encodeProperty(Property property, ByteBuffer buffer) throws CodecException
+	{
+		PropertyType type = getType(property);
+		
+		BinaryCodec.putVarInt(buffer, type.typeId);
+		type.encoder.encode(property, buffer);
+	}
+	
+	/**
+	 * Reads type id and payload of a property.
+	 * 
+	 * @throws CodecException If type id is unknown or payload is invalid
+	 */
+	public static Property decodeProperty(ByteBuffer buffer) throws CodecException
+	{
+		int typeId = BinaryCodec.getVarInt(buffer);
+		
+		PropertyType[] types = sTypesById;
+		if((typeId <= 0) || (typeId >= types.length) || (types[typeId] == null)) {
+			throw new CodecException("Unknown property type id " +typeId);
+		}
+		
+		return types[typeId].encoder.decode(buffer);
+	}
+	
+	private static PropertyType getType(Property property) throws CodecException
+	{
+		PropertyType type = null;
+		if(property != null) type = sTypesByClass.get(property.getClass());
+		
+		if(type == null) {
+			throw new CodecException("Property " +property +" has no registered type id.");
+		}
+		
+		return type;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName();
+	}
+	
+	/**
+	 * Encoding for all {@link MinMaxProperty} types: flags, min, max, [variance]
+	 */
+	private static abstract class MinMaxEncoder<P extends MinMaxProperty> implements PropertyEncoder<P>
+	{
+		@Override
+		public int getEncodedSize(P property)
+		{
+			int size = 1 +BinaryCodec.getVarIntSize(BinaryCodec.encodeZigZag(property.getMin())) +BinaryCodec.getVarIntSize(BinaryCodec.encodeZigZag(property.getMax()));
+			
+			if(property.getVariance() != 0) size += 8;
+			return size;
+		}
+		
+		@Override
+		public void encode(P property, ByteBuffer buffer)
+		{
+			// variance is zero in most cases
+			boolean hasVariance = property.getVariance() != 0;
+			
+			buffer.put(hasVariance ? FLAG_VARIANCE : 0);
+			BinaryCodec.putVarInt(buffer, BinaryCodec.encodeZigZag(property.getMin()));
+			BinaryCodec.putVarInt(buffer, BinaryCodec.encodeZigZag(property.getMax()));
+			if(hasVariance) buffer.putDouble(property.getVariance());
+		}
+		
+		@Override
+		public P decode(ByteBuffer buffer) throws CodecException
+		{
+			byte flags = buffer.get();
+			int min = BinaryCodec.decodeZigZag(BinaryCodec.getVarInt(buffer));
+			int max = BinaryCodec.decodeZigZag(BinaryCodec.getVarInt(buffer));
+			double variance = 0;
+			if((flags & FLAG_VARIANCE) != 0) variance = buffer.getDouble();
+			
+			try {
+				return create(min, max, variance);
+			}
+			catch(PropertyException exc) {
+				throw new CodecException("Encoded property invalid.", exc);
+			}
+		}
+		
+		protected abstract P create(int min, int max, double variance) throws PropertyException;
+		
+		private static final byte FLAG_VARIANCE = 1;
+	}
+	
+	private static class PropertyType
+	{
+		@SuppressWarnings("unchecked")
+		public PropertyType(int typeId, Class<?> propertyClass, PropertyEncoder<?> encoder)
+		{
+			this.typeId = typeId;
+			this.propertyClass = propertyClass;
+			this.encoder = (PropertyEncoder<Property>) encoder;
+		}
+		
+		public final int typeId;
+		public final Class<?> propertyClass;
+		public final PropertyEncoder<Property> encoder;
+	}
+	
+	private static final ConcurrentHashMap<Class<?>, PropertyType> sTypesByClass = new ConcurrentHashMap<Class<?>, PropertyType>();
+	private static volatile PropertyType[] sTypesById = new PropertyType[MAX_RESERVED_TYPE_ID +1];
+	
+	static {
+		registerPropertyType(1, DelayProperty.class, new MinMaxEncoder<DelayProperty>() {
+			@Override
+			protected DelayProperty create(int min, int max, double variance)
+			{
+				return new DelayProperty(min, max, variance);
+			}
+		});
+		registerPropertyType(2, DatarateProperty.class, new MinMaxEncoder<DatarateProperty>() {
+			@Override
+			protected DatarateProperty create(int min, int max, double variance)
+			{
+				return new DatarateProperty(min, max, variance);
+			}
+		});
+		registerPropertyType(3, LossRateProperty.class, new MinMaxEncoder<LossRateProperty>() {
+			@Override
+			protected LossRateProperty create(int min, int max, double variance) throws PropertyException
+			{
+				return new LossRateProperty(min, max, variance);
+			}
+		});
+		registerPropertyType(4, PriorityProperty.class, new PropertyEncoder<PriorityProperty>() {
+			@Override
+			public int getEncodedSize(PriorityProperty property)
+			{
+				return BinaryCodec.getVarIntSize(BinaryCodec.encodeZigZag(property.getPriority()));
+			}
+			
+			@Override
+			public void encode(PriorityProperty property, ByteBuffer buffer)
+			{
+				BinaryCodec.putVarInt(buffer, BinaryCodec.encodeZigZag(property.getPriority()));
+			}
+			
+			@Override
+			public PriorityProperty decode(ByteBuffer buffer) throws CodecException
+			{
+				return new PriorityProperty(BinaryCodec.decodeZigZag(BinaryCodec.getVarInt(buffer)));
+			}
+		});
+		registerPropertyType(5, OrderedProperty.class, new PropertyEncoder<OrderedProperty>() {
+			@Override
+			public int getEncodedSize(OrderedProperty property)
+			{
+				return 1;
+			}
+			
+			@Override
+			public void encode(OrderedProperty property, ByteBuffer buffer)
+			{
+				buffer.put((byte) (property.getActivation() ? 1 : 0));
+			}
+			
+			@Override
+			public OrderedProperty decode(ByteBuffer buffer)
+			{
+				return new OrderedProperty(buffer.get() != 0);
+			}
+		});
+		registerPropertyType(6, CommunicationTypeProperty.class, new PropertyEncoder<CommunicationTypeProperty>() {
+			@Override
+			public int getEncodedSize(CommunicationTypeProperty property)
+			{
+				return 1;
+			}
+			
+			@Override
+			public void encode(CommunicationTypeProperty property, ByteBuffer buffer)
+			{
+				// equals instead of identity since deserialized instances may not be the constants
+				if(CommunicationTypeProperty.STREAM.equals(property)) buffer.put((byte) 0);
+				else if(CommunicationTypeProperty.DATAGRAM_STREAM.equals(property)) buffer.put((byte) 1);
+				else buffer.put((byte) 2);
+			}
+			
+			@Override
+			public CommunicationTypeProperty decode(ByteBuffer buffer) throws CodecException
+			{
+				byte id = buffer.get();
+				
+				switch(id) {
+				case 0: return CommunicationTypeProperty.STREAM;
+				case 1: return CommunicationTypeProperty.DATAGRAM_STREAM;
+				case 2: return CommunicationTypeProperty.DATAGRAM;
+				default:
+					throw new CodecException("Unknown communication type " +id);
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,191 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Strategy for delivering events of a {@link BaseEventSource} to its
+ * listeners. All strategies preserve the order of the events of a
+ * single event source.
+ *
+ * Asynchronous strategies decouple the thread raising an event (e.g. the
+ * receive thread of a lower layer) from the latency of the listeners.
+ */
+public abstract class EventDispatcher
+{
+	/**
+	 * Events are delivered synchronously in the thread raising the event.
+	 */
+	public static final EventDispatcher INLINE = new EventDispatcher() {
+		@Override
+		public Executor createExecutor()
+		{
+			return null;
+		}
+	};
+
+	/**
+	 * Each event source gets its own delivery thread. The thread is
+	 * terminated if no events occurred for some time.
+	 *
+	 * @param threadFactory Factory for the delivery threads
+	 */
+	public static EventDispatcher createSerial(final ThreadFactory threadFactory)
+	{
+		return new EventDispatcher() {
+			@Override
+			public Executor createExecutor()
+			{
+				ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SEC, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+				executor.allowCoreThreadTimeOut(true);
+
+				return executor;
+			}
+		};
+	}
+
+	/**
+	 * All event sources share a thread pool. Events of a single source are
+	 * delivered sequentially by one thread of the pool at a time.
+	 *
+	 * @param sharedExecutor Thread pool used by all event sources
+	 */
+	public static EventDispatcher createShared(final Executor sharedExecutor)
+	{
+		return new EventDispatcher() {
+			@Override
+			public Executor createExecutor()
+			{
+				return new SerialExecutor(sharedExecutor);
+			}
+		};
+	}
+
+	/**
+	 * Events are delivered by new threads created by the factory. This is
+	 * intended for factories with very lightweight threads (e.g. virtual
+	 * threads). In order to preserve the order, events of a single source
+	 * occurring in a burst are delivered by the same thread.
+	 *
+	 * @param threadFactory Factory for a delivery thread
+	 */
+	public static EventDispatcher createThreadPerEvent(final ThreadFactory threadFactory)
+	{
+		final Executor threadPerTask = new Executor() {
+			@Override
+			public void execute(Runnable task)
+			{
+				Thread thread = threadFactory.newThread(task);
+				if(thread == null) throw new RejectedExecutionException("Thread factory " +threadFactory +" refused to create a thread.");
+
+				thread.start();
+			}
+		};
+
+		return createShared(threadPerTask);
+	}
+
+	/**
+	 * Creates the executor for a single event source. The executor has to
+	 * execute the tasks in the order of their submission.
+	 *
+	 * @return Executor for an event source or {@code null} for synchronous delivery
+	 */
+	public abstract Executor createExecutor();
+
+	/**
+	 * Executes tasks sequentially in the order of submission by using
+	 * threads of another executor.
+	 */
+	private static class SerialExecutor implements Executor, Runnable
+	{
+		public SerialExecutor(Executor executor)
+		{
+			this.executor = executor;
+		}
+
+		@Override
+		public void execute(Runnable task)
+		{
+			tasks.add(task);
+			schedule();
+		}
+
+		private void schedule()
+		{
+			if(scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+				}
+				catch(RejectedExecutionException exc) {
+					// executor is not available; deliver in current thread
+					run();
+				}
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			for(int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+				Runnable task = tasks.poll();
+
+				if(task == null) {
+					scheduled.set(false);
+
+					// was a task added after poll and before releasing the flag?
+					if(tasks.isEmpty() || !scheduled.compareAndSet(false, true)) {
+						return;
+					}
+				} else {
+					boolean completed = false;
+					try {
+						task.run();
+						completed = true;
+					}
+					finally {
+						if(!completed) {
+							// do not block subsequent tasks, even if an Error was thrown
+							scheduled.set(false);
+							if(!tasks.isEmpty()) schedule();
+						}
+					}
+				}
+			}
+
+			// give other event sources a chance to use the thread
+			scheduled.set(false);
+			if(!tasks.isEmpty()) schedule();
+		}
+
+		private final Executor executor;
+		private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	}
+
+	private static final long IDLE_TIMEOUT_SEC = 30;
+	private static final int MAX_TASKS_PER_RUN = 64;
+}
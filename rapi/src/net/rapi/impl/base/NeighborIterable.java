@@ -0,0 +1,116 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import net.rapi.Name;
+import net.rapi.NeighborDiscovery;
+import net.rapi.NeighborName;
+import net.rapi.NeighborPage;
+import net.rapi.NetworkException;
+
+
+/**
+ * Lazily evaluated enumeration of the neighbors of a {@link NeighborDiscovery}.
+ * Pages are requested while iterating. Thus, just one page is kept in memory
+ * and the iteration can be stopped without requesting the remaining pages.
+ * 
+ * Errors of the layer are thrown as {@link RuntimeException}s with the
+ * {@link NetworkException} as cause, since iterators do not support
+ * checked exceptions.
+ */
+public class NeighborIterable implements Iterable<NeighborName>
+{
+	public static final int DEFAULT_PAGE_SIZE = 256;
+	
+	
+	public NeighborIterable(NeighborDiscovery discovery, Name namePrefix)
+	{
+		this(discovery, namePrefix, DEFAULT_PAGE_SIZE);
+	}
+	
+	/**
+	 * @param discovery Layer providing the neighbors
+	 * @param namePrefix Optional filter passed to the layer
+	 * @param pageSize Maximum number of neighbors per request (> 0)
+	 */
+	public NeighborIterable(NeighborDiscovery discovery, Name namePrefix, int pageSize)
+	{
+		if(discovery == null) throw new IllegalArgumentException(this.getClass() +" - Neighbor discovery is missing.");
+		if(pageSize <= 0) throw new IllegalArgumentException(this.getClass() +" - Invalid page size " +pageSize);
+		
+		this.discovery = discovery;
+		this.namePrefix = namePrefix;
+		this.pageSize = pageSize;
+	}
+	
+	@Override
+	public Iterator<NeighborName> iterator()
+	{
+		return new PageIterator();
+	}
+	
+	private class PageIterator implements Iterator<NeighborName>
+	{
+		@Override
+		public boolean hasNext()
+		{
+			while((current == null) || !current.hasNext()) {
+				if(!hasMore) return false;
+				
+				// fetch next page lazily
+				NeighborPage page;
+				try {
+					page = discovery.getNeighbors(namePrefix, cursor, pageSize);
+				}
+				catch(NetworkException exc) {
+					throw new RuntimeException(this +" - Can not get neighbors from " +discovery, exc);
+				}
+				
+				current = page.getNeighbors().iterator();
+				cursor = page.getNextCursor();
+				hasMore = page.hasMore();
+			}
+			
+			return true;
+		}
+
+		@Override
+		public NeighborName next()
+		{
+			if(!hasNext()) throw new NoSuchElementException();
+			
+			return current.next();
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException(this +" - Neighbors are read-only.");
+		}
+		
+		private Iterator<NeighborName> current = null;
+		private long cursor = NeighborDiscovery.FIRST_PAGE;
+		private boolean hasMore = true;
+	}
+	
+	private final NeighborDiscovery discovery;
+	private final Name namePrefix;
+	private final int pageSize;
+}
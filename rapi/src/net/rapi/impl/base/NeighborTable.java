@@ -0,0 +1,343 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import net.rapi.Name;
+import net.rapi.NeighborDiscovery;
+import net.rapi.NeighborName;
+import net.rapi.NeighborPage;
+import net.rapi.events.NeighborDeltaEvent;
+
+
+/**
+ * Neighbor table for layers implementing {@link NeighborDiscovery}.
+ * 
+ * Each neighbor gets a sequence number when it is added. Pages are
+ * enumerated in the order of the sequence numbers and the cursor is the
+ * last sequence number of a page. Thus, requesting a page does not depend
+ * on the size of the table and on the pages requested before. Reading
+ * does not block; changes are serialized.
+ * 
+ * Changes are collected and reported as one {@link NeighborDeltaEvent}
+ * per batch. A batch is completed by {@link #flush()} (e.g. periodically
+ * by the layer) or automatically if it reaches the batch limit. Events
+ * are delivered without holding the lock of the table. If multiple threads
+ * change the table concurrently, listeners might receive the events out of
+ * order. They detect that via the version numbers.
+ */
+public class NeighborTable implements NeighborDiscovery
+{
+	public static final int DEFAULT_BATCH_LIMIT = 256;
+	
+	
+	/**
+	 * @param eventSource Source for the delta events (e.g. the layer); {@code null} if no events should be generated
+	 */
+	public NeighborTable(BaseEventSource eventSource)
+	{
+		this.eventSource = eventSource;
+	}
+	
+	/**
+	 * Adds a neighbor to the table.
+	 * 
+	 * @return {@code true} if neighbor was added; {@code false} if it was already known
+	 */
+	public boolean add(NeighborName neighbor)
+	{
+		NeighborDeltaEvent event = null;
+		
+		synchronized (this) {
+			if(sequenceNumbers.containsKey(neighbor)) {
+				return false;
+			}
+			
+			long sequenceNumber = ++lastSequenceNumber;
+			neighbors.put(sequenceNumber, neighbor);
+			sequenceNumbers.put(neighbor, sequenceNumber);
+			
+			// re-appeared within batch -> no change at all
+			if(!disappeared.remove(neighbor)) {
+				appeared.add(neighbor);
+			}
+			
+			event = flushIfLimitReached();
+		}
+		
+		notify(event);
+		return true;
+	}
+	
+	/**
+	 * Removes a neighbor from the table.
+	 * 
+	 * @return {@code true} if neighbor was removed; {@code false} if it was not known
+	 */
+	public boolean remove(NeighborName neighbor)
+	{
+		NeighborDeltaEvent event = null;
+		
+		synchronized (this) {
+			Long sequenceNumber = sequenceNumbers.remove(neighbor);
+			if(sequenceNumber == null) {
+				return false;
+			}
+			
+			neighbors.remove(sequenceNumber);
+			
+			// appeared within batch -> no change at all
+			if(!appeared.remove(neighbor)) {
+				disappeared.add(neighbor);
+			}
+			
+			event = flushIfLimitReached();
+		}
+		
+		notify(event);
+		return true;
+	}
+	
+	/**
+	 * Completes the current batch of changes and informs the listeners of
+	 * the event source.
+	 * 
+	 * @return Delta event or {@code null} if there were no changes
+	 */
+	public NeighborDeltaEvent flush()
+	{
+		NeighborDeltaEvent event;
+		
+		synchronized (this) {
+			event = createDelta();
+		}
+		
+		notify(event);
+		return event;
+	}
+	
+	/**
+	 * @param limit Maximum number of changes in a batch (> 0)
+	 */
+	public synchronized void setBatchLimit(int limit)
+	{
+		if(limit <= 0) throw new IllegalArgumentException(this +" - Invalid batch limit " +limit);
+		
+		batchLimit = limit;
+	}
+	
+	/**
+	 * Returns a page of neighbors. The number of neighbors checked against
+	 * the prefix is limited per call. Thus, a page might contain less
+	 * neighbors than requested although further neighbors are available.
+	 */
+	@Override
+	public NeighborPage getNeighbors(Name namePrefix, long cursor, int maxNeighbors)
+	{
+		if(maxNeighbors <= 0) throw new IllegalArgumentException(this +" - Invalid page size " +maxNeighbors);
+		
+		long currentVersion = version;
+		long maxScanned = (long) maxNeighbors *SCAN_LIMIT_FACTOR;
+		
+		ArrayList<NeighborName> page = new ArrayList<NeighborName>(Math.min(maxNeighbors, DEFAULT_BATCH_LIMIT));
+		long nextCursor = cursor;
+		long scanned = 0;
+		
+		for(Map.Entry<Long, NeighborName> entry : neighbors.tailMap(cursor, false).entrySet()) {
+			if((page.size() >= maxNeighbors) || (scanned >= maxScanned)) {
+				return new NeighborPage(page, nextCursor, true, currentVersion);
+			}
+			
+			NeighborName neighbor = entry.getValue();
+			if(matches(neighbor, namePrefix)) {
+				page.add(neighbor);
+			}
+			
+			nextCursor = entry.getKey();
+			scanned++;
+		}
+		
+		return new NeighborPage(page, nextCursor, false, currentVersion);
+	}
+	
+	/**
+	 * Lazy view on the table for implementing {@link net.rapi.Layer#getNeighbors(Name)}.
+	 * The iteration is weakly consistent and does not copy the table.
+	 * 
+	 * @param namePrefix Optional filter
+	 * @return Neighbors matching the prefix
+	 */
+	public Iterable<NeighborName> getNeighbors(final Name namePrefix)
+	{
+		return new Iterable<NeighborName>() {
+			@Override
+			public Iterator<NeighborName> iterator()
+			{
+				return new FilterIterator(neighbors.values().iterator(), namePrefix);
+			}
+		};
+	}
+	
+	@Override
+	public long getNeighborVersion()
+	{
+		return version;
+	}
+	
+	public boolean contains(NeighborName neighbor)
+	{
+		return sequenceNumbers.containsKey(neighbor);
+	}
+	
+	/**
+	 * @return Number of neighbors
+	 */
+	public int size()
+	{
+		return sequenceNumbers.size();
+	}
+	
+	/**
+	 * Checks if a neighbor matches a name prefix. By default, the binding
+	 * name of the neighbor has to be in the namespace of the prefix and its
+	 * string representation has to start with the one of the prefix. Layers
+	 * with structured names should override it.
+	 * 
+	 * @param neighbor Neighbor from table
+	 * @param namePrefix Prefix or {@code null} if all neighbors match
+	 */
+	protected boolean matches(NeighborName neighbor, Name namePrefix)
+	{
+		if(namePrefix == null) return true;
+		
+		Name name = neighbor.getBindingName();
+		if(name == null) name = neighbor;
+		
+		return namePrefix.getNamespace().equals(name.getNamespace()) && name.toString().startsWith(namePrefix.toString());
+	}
+	
+	/**
+	 * Caller has to hold the lock of the object.
+	 */
+	private NeighborDeltaEvent flushIfLimitReached()
+	{
+		if(appeared.size() +disappeared.size() >= batchLimit) {
+			return createDelta();
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Caller has to hold the lock of the object.
+	 */
+	private NeighborDeltaEvent createDelta()
+	{
+		if(appeared.isEmpty() && disappeared.isEmpty()) {
+			return null;
+		}
+		
+		version++;
+		NeighborDeltaEvent event = new NeighborDeltaEvent(eventSource, version, appeared, disappeared);
+		
+		// event owns the sets now
+		appeared = new LinkedHashSet<NeighborName>();
+		disappeared = new LinkedHashSet<NeighborName>();
+		
+		return event;
+	}
+	
+	/**
+	 * Informs listeners without holding the lock.
+	 */
+	private void notify(NeighborDeltaEvent event)
+	{
+		if((event != null) && (eventSource != null)) {
+			eventSource.notifyObservers(event);
+		}
+	}
+	
+	/**
+	 * Iterates neighbors matching a prefix.
+	 */
+	private class FilterIterator implements Iterator<NeighborName>
+	{
+		public FilterIterator(Iterator<NeighborName> iterator, Name namePrefix)
+		{
+			this.iterator = iterator;
+			this.namePrefix = namePrefix;
+		}
+		
+		@Override
+		public boolean hasNext()
+		{
+			while((next == null) && iterator.hasNext()) {
+				NeighborName candidate = iterator.next();
+				
+				if(matches(candidate, namePrefix)) {
+					next = candidate;
+				}
+			}
+			
+			return next != null;
+		}
+		
+		@Override
+		public NeighborName next()
+		{
+			if(!hasNext()) throw new NoSuchElementException();
+			
+			NeighborName res = next;
+			next = null;
+			return res;
+		}
+		
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException(this +" - Use NeighborTable.remove instead.");
+		}
+		
+		private final Iterator<NeighborName> iterator;
+		private final Name namePrefix;
+		private NeighborName next = null;
+	}
+	
+	/**
+	 * Maximum number of neighbors checked per requested neighbor of a page
+	 */
+	private static final int SCAN_LIMIT_FACTOR = 16;
+	
+	private final BaseEventSource eventSource;
+	
+	private final ConcurrentSkipListMap<Long, NeighborName> neighbors = new ConcurrentSkipListMap<Long, NeighborName>();
+	private final ConcurrentHashMap<NeighborName, Long> sequenceNumbers = new ConcurrentHashMap<NeighborName, Long>();
+	private long lastSequenceNumber = 0;
+	
+	/* current batch of changes */
+	private LinkedHashSet<NeighborName> appeared = new LinkedHashSet<NeighborName>();
+	private LinkedHashSet<NeighborName> disappeared = new LinkedHashSet<NeighborName>();
+	private int batchLimit = DEFAULT_BATCH_LIMIT;
+	private volatile long version = 0;
+}
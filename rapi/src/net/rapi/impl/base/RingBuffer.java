@@ -0,0 +1,183 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Bounded lock-free ring buffer for a single producer thread.
+ *
+ * The buffer is designed for a single consumer as well. However, removing
+ * elements is safe for concurrent threads. That enables the producer to
+ * drop the oldest element via {@link #poll()} while the consumer is reading.
+ * A remover claims a slot by moving the head and releases it after clearing
+ * the slot. The producer reuses released slots only. Thus, it never writes
+ * into a slot a remover is still working on.
+ *
+ * The capacity is rounded up to the next power of two.
+ */
+public class RingBuffer<E>
+{
+	public RingBuffer(int capacity)
+	{
+		if(capacity <= 0) throw new IllegalArgumentException(this.getClass() +" - Invalid capacity " +capacity);
+
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity) size = size << 1;
+
+		elements = new AtomicReferenceArray<E>(size);
+		mask = size -1;
+	}
+
+	/**
+	 * Appends an element. Must only be called by the producer thread.
+	 *
+	 * @param element Element to store ({@code != null})
+	 * @return {@code true} if stored; {@code false} if buffer is full
+	 */
+	public boolean offer(E element)
+	{
+		if(element == null) throw new NullPointerException(this.getClass() +" - Null elements are not supported.");
+
+		long tail = this.tail.get();
+		if(tail -released.get() > mask) {
+			return false;
+		}
+
+		elements.set((int)(tail & mask), element);
+
+		// publish element for consumer; full volatile write since
+		// callers may check for waiting consumers afterwards
+		this.tail.set(tail +1);
+		return true;
+	}
+
+	/**
+	 * Removes the oldest element.
+	 *
+	 * @return Element or {@code null} if buffer is empty
+	 */
+	public E poll()
+	{
+		while(true) {
+			long head = this.head.get();
+			if(head >= tail.get()) {
+				return null;
+			}
+
+			// claim slot; producer does not reuse it before it is released
+			if(this.head.compareAndSet(head, head +1)) {
+				int index = (int)(head & mask);
+				E element = elements.get(index);
+				elements.set(index, null);
+
+				// release slots in order; a concurrent remover of the previous
+				// slot is just between claiming and releasing
+				while(!released.compareAndSet(head, head +1)) {
+					Thread.yield();
+				}
+
+				return element;
+			}
+			// else: someone else removed element -> retry
+		}
+	}
+
+	/**
+	 * Removes up to {@code maxElements} elements and adds them to a collection.
+	 * 
+	 * @param sink Collection receiving the elements in the order of the buffer
+	 * @param maxElements Maximum number of elements to remove
+	 * @return Number of removed elements
+	 */
+	public int drainTo(Collection<? super E> sink, int maxElements)
+	{
+		int count = 0;
+		
+		while(count < maxElements) {
+			E element = poll();
+			if(element == null) break;
+			
+			sink.add(element);
+			count++;
+		}
+		
+		return count;
+	}
+
+	/**
+	 * @return Oldest element without removing it or {@code null} if buffer is empty
+	 */
+	public E peek()
+	{
+		long head = this.head.get();
+		if(head >= tail.get()) {
+			return null;
+		}
+
+		return elements.get((int)(head & mask));
+	}
+
+	/**
+	 * @return Number of elements currently stored (snapshot)
+	 */
+	public int size()
+	{
+		long size = tail.get() -head.get();
+
+		if(size < 0) return 0;
+		else return (int) size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size() <= 0;
+	}
+
+	/**
+	 * @return Maximum number of elements
+	 */
+	public int capacity()
+	{
+		return mask +1;
+	}
+
+	/**
+	 * Removes all elements.
+	 */
+	public void clear()
+	{
+		while(poll() != null) {
+			// nothing to do
+		}
+	}
+
+	private final AtomicReferenceArray<E> elements;
+	private final int mask;
+
+	/* index of next element to read */
+	private final AtomicLong head = new AtomicLong();
+
+	/* index of next slot, which was not cleared yet by a remover */
+	private final AtomicLong released = new AtomicLong();
+
+	/* index of next slot to write */
+	private final AtomicLong tail = new AtomicLong();
+}
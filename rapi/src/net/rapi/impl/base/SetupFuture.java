@@ -0,0 +1,219 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.LinkedList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Result of an asynchronous setup of a {@link net.rapi.Connection} or
+ * {@link net.rapi.Binding} (see {@link AsyncLayer}). Besides waiting
+ * for the result via {@link #get}, callbacks can be registered in order
+ * to compose setups without blocking threads.
+ */
+public class SetupFuture<T> implements Future<T>
+{
+	/**
+	 * Callback informed about the completion of a setup. The callback is
+	 * called in the thread completing the setup. Like event listeners, it
+	 * MUST return as fast as possible.
+	 */
+	public interface Callback<T>
+	{
+		public void completed(T result);
+		
+		public void failed(Throwable failure);
+	}
+	
+	
+	/**
+	 * @param target Object, which is set up
+	 */
+	public SetupFuture(T target)
+	{
+		this.target = target;
+	}
+	
+	/**
+	 * @return Object, which is set up (even if setup is not completed)
+	 */
+	public T getTarget()
+	{
+		return target;
+	}
+	
+	/**
+	 * Marks the setup as successful.
+	 * 
+	 * @return {@code true} if future was completed by this call
+	 */
+	public boolean complete()
+	{
+		return finish(COMPLETED, null);
+	}
+	
+	/**
+	 * Marks the setup as failed.
+	 * 
+	 * @return {@code true} if future was completed by this call
+	 */
+	public boolean fail(Throwable failure)
+	{
+		return finish(FAILED, failure);
+	}
+	
+	/**
+	 * Cancels the setup. Derived classes can override {@link #onCancel()}
+	 * in order to abort the setup.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning)
+	{
+		if(finish(CANCELLED, new CancellationException(this +" - Setup was cancelled."))) {
+			onCancel();
+			return true;
+		} else {
+			return false;
+		}
+	}
+	
+	/**
+	 * Called after the future was cancelled successfully.
+	 */
+	protected void onCancel()
+	{
+		// nothing to do by default
+	}
+	
+	/**
+	 * Registers a callback. If the setup is already completed, the callback
+	 * is called immediately in the current thread.
+	 */
+	public void addCallback(Callback<? super T> callback)
+	{
+		synchronized (this) {
+			if(state == RUNNING) {
+				if(callbacks == null) callbacks = new LinkedList<Callback<? super T>>();
+				
+				callbacks.add(callback);
+				return;
+			}
+		}
+		
+		inform(callback);
+	}
+	
+	@Override
+	public boolean isCancelled()
+	{
+		return state == CANCELLED;
+	}
+
+	@Override
+	public boolean isDone()
+	{
+		return state != RUNNING;
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException
+	{
+		done.await();
+		
+		return getResult();
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+	{
+		if(!done.await(timeout, unit)) {
+			throw new TimeoutException(this +" - Setup not completed within " +timeout +" " +unit);
+		}
+		
+		return getResult();
+	}
+	
+	private T getResult() throws ExecutionException
+	{
+		switch(state) {
+		case COMPLETED:
+			return target;
+		case CANCELLED:
+			throw (CancellationException) failure;
+		default:
+			throw new ExecutionException(failure);
+		}
+	}
+	
+	private boolean finish(int newState, Throwable newFailure)
+	{
+		LinkedList<Callback<? super T>> toInform;
+		
+		synchronized (this) {
+			if(state != RUNNING) return false;
+			
+			failure = newFailure;
+			state = newState;
+			
+			toInform = callbacks;
+			callbacks = null;
+		}
+		
+		done.countDown();
+		
+		if(toInform != null) {
+			for(Callback<? super T> callback : toInform) {
+				inform(callback);
+			}
+		}
+		
+		return true;
+	}
+	
+	private void inform(Callback<? super T> callback)
+	{
+		if(state == COMPLETED) {
+			callback.completed(target);
+		} else {
+			callback.failed(failure);
+		}
+	}
+	
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() +"(" +target +")";
+	}
+	
+	private static final int RUNNING = 0;
+	private static final int COMPLETED = 1;
+	private static final int FAILED = 2;
+	private static final int CANCELLED = 3;
+	
+	private final T target;
+	private final CountDownLatch done = new CountDownLatch(1);
+	
+	private volatile int state = RUNNING;
+	private volatile Throwable failure;
+	private LinkedList<Callback<? super T>> callbacks;
+}
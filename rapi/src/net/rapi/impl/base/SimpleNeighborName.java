@@ -28,6 +28,9 @@ public class SimpleNeighborName implements NeighborName
 	public SimpleNeighborName(Name bindingName)
 	{
 		this.bindingName = bindingName;
+		
+		// names are immutable; avoid delegation per packet
+		this.serialisedSize = bindingName.getSerialisedSize();
 	}
 	
 	@Override
@@ -39,7 +42,7 @@ public class SimpleNeighborName implements NeighborName
 	@Override
 	public int getSerialisedSize()
 	{
-		return bindingName.getSerialisedSize();
+		return serialisedSize;
 	}
 
 	@Override
@@ -49,4 +52,5 @@ public class SimpleNeighborName implements NeighborName
 	}
 
 	private Name bindingName;
+	private final int serialisedSize;
 }
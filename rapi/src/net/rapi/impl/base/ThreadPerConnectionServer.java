@@ -0,0 +1,213 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.impl.base;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.rapi.Binding;
+import net.rapi.Connection;
+
+
+/**
+ * Server serving each incoming connection of a binding with its own thread.
+ * The handler uses the blocking API of the connection (e.g.
+ * {@link Connection#take()} or {@link Connection#getInputStream()}).
+ * 
+ * The threads are created by a {@link ThreadFactory}. On JVMs supporting
+ * virtual threads, a factory for them (e.g. {@code Thread.ofVirtual().factory()})
+ * enables a huge number of concurrent connections. Since the blocking points
+ * of the base implementation do not use monitors, the virtual threads do not
+ * pin their carrier threads while waiting.
+ */
+public class ThreadPerConnectionServer implements Runnable
+{
+	/**
+	 * Serves a single connection. The connection is accepted via
+	 * {@link Connection#connect()} before the handler is called and
+	 * closed after the handler returns.
+	 */
+	public interface Handler
+	{
+		public void handle(Connection connection) throws Exception;
+	}
+	
+	/**
+	 * @param binding Binding providing the incoming connections
+	 * @param threadFactory Factory for the acceptor thread and the connection threads
+	 * @param handler Handler called for each connection in its own thread
+	 */
+	public ThreadPerConnectionServer(Binding binding, ThreadFactory threadFactory, Handler handler)
+	{
+		if(binding == null) throw new IllegalArgumentException(this +" - Binding is missing.");
+		if(threadFactory == null) throw new IllegalArgumentException(this +" - Thread factory is missing.");
+		if(handler == null) throw new IllegalArgumentException(this +" - Handler is missing.");
+		
+		this.binding = binding;
+		this.threadFactory = threadFactory;
+		this.handler = handler;
+	}
+	
+	/**
+	 * Starts accepting connections in a thread created by the factory.
+	 */
+	public synchronized void start()
+	{
+		if(acceptor != null) throw new IllegalStateException(this +" - Server already started.");
+		
+		running = true;
+		acceptor = threadFactory.newThread(this);
+		if(acceptor == null) throw new IllegalStateException(this +" - Thread factory " +threadFactory +" refused to create acceptor thread.");
+		
+		acceptor.start();
+	}
+	
+	/**
+	 * Stops accepting new connections. Connections, which are served
+	 * already, are not affected.
+	 */
+	public void stop()
+	{
+		running = false;
+		
+		Thread thread = acceptor;
+		if(thread != null) thread.interrupt();
+	}
+	
+	/**
+	 * Closes all connections served currently.
+	 */
+	public void closeConnections()
+	{
+		for(Connection conn : active) {
+			conn.close();
+		}
+	}
+	
+	/**
+	 * Acceptor loop. Terminates if the server is stopped or the binding
+	 * becomes inactive or is closed. A closed binding is detected by
+	 * {@link Binding#accept} returning without connection before the
+	 * timeout expired.
+	 */
+	@Override
+	public void run()
+	{
+		try {
+			long intervalNanos = TimeUnit.MILLISECONDS.toNanos(ACCEPT_INTERVAL_MSEC);
+			
+			while(running) {
+				long start = System.nanoTime();
+				Connection conn = binding.accept(ACCEPT_INTERVAL_MSEC, TimeUnit.MILLISECONDS);
+				
+				if(conn != null) {
+					serve(conn);
+				}
+				else if(!binding.isActive() || (System.nanoTime() -start < intervalNanos)) {
+					// inactive or closed (returned before timeout)
+					break;
+				}
+			}
+		}
+		catch(InterruptedException exc) {
+			// stop was called; terminate
+		}
+		finally {
+			running = false;
+		}
+	}
+	
+	/**
+	 * Starts a thread for a connection.
+	 */
+	private void serve(final Connection conn)
+	{
+		Thread thread = threadFactory.newThread(new Runnable() {
+			@Override
+			public void run()
+			{
+				try {
+					// accept incoming connection
+					conn.connect();
+					
+					handler.handle(conn);
+				}
+				catch(Exception exc) {
+					handleFailure(conn, exc);
+				}
+				finally {
+					active.remove(conn);
+					conn.close();
+				}
+			}
+		});
+		
+		if(thread != null) {
+			active.add(conn);
+			thread.start();
+		} else {
+			// no resources for serving connection
+			conn.close();
+		}
+	}
+	
+	/**
+	 * Called if a handler throws an exception. The connection is closed
+	 * afterwards. Derived classes can override it in order to log the error.
+	 * 
+	 * @param connection Connection served by the handler
+	 * @param failure Exception thrown by the handler
+	 */
+	protected void handleFailure(Connection connection, Exception failure)
+	{
+		// nothing to do by default
+	}
+	
+	public boolean isRunning()
+	{
+		return running;
+	}
+	
+	/**
+	 * @return Number of connections served currently
+	 */
+	public int getNumberActiveConnections()
+	{
+		return active.size();
+	}
+	
+	public Binding getBinding()
+	{
+		return binding;
+	}
+	
+	/**
+	 * Interval for checking if the binding is still active
+	 */
+	private static final long ACCEPT_INTERVAL_MSEC = 1000;
+	
+	private final Binding binding;
+	private final ThreadFactory threadFactory;
+	private final Handler handler;
+	
+	private volatile Thread acceptor = null;
+	private volatile boolean running = false;
+	private final Set<Connection> active = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+}
@@ -56,6 +56,16 @@ public abstract class AbstractProperty implements Property
 		return obj.getClass().equals(getClass());
 	}
 	
+	/**
+	 * Consistent with {@link #equals(Object)}, which just compares the classes.
+	 * Properties with values have to override both methods.
+	 */
+	@Override
+	public int hashCode()
+	{
+		return getClass().hashCode();
+	}
+	
 	/**
 	 * Indicate if the requirement is valid also for relay systems.
 	 * Default value is false.
@@ -122,6 +122,18 @@ public class CommunicationTypeProperty implements Property
 	{
 		return type.toString();
 	}
+	
+	/**
+	 * Keeps the objects idempotent after Java deserialization.
+	 */
+	private Object readResolve()
+	{
+		switch(type) {
+			case STREAM: return STREAM;
+			case DATAGRAM_STREAM: return DATAGRAM_STREAM;
+			default: return DATAGRAM;
+		}
+	}
 
 	@Override
 	public boolean equals(Object obj)
@@ -136,6 +148,12 @@ public class CommunicationTypeProperty implements Property
 		}
 	}
 	
+	@Override
+	public int hashCode()
+	{
+		return type.ordinal();
+	}
+	
 	// explanation see static CommunicationTypeProperty objects
 	private enum Type {	STREAM,	DATAGRAM_STREAM, DATAGRAM }
 	
@@ -24,6 +24,8 @@ package net.rapi.properties;
  */
 public class DatarateProperty extends MinMaxProperty
 {
+	private static final long serialVersionUID = 1002484519845188246L;
+	
 	public DatarateProperty(int bandwidthKBitSec, Limit minValue)
 	{
 		super(bandwidthKBitSec, minValue);
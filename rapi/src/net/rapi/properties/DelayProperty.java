@@ -19,6 +19,8 @@ package net.rapi.properties;
 
 public class DelayProperty extends MinMaxProperty
 {
+	private static final long serialVersionUID = 7125725937928941687L;
+	
 	public static int DefaultMaxValueMSec = 100;
 	
 	
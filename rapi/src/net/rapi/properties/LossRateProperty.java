@@ -19,6 +19,8 @@ package net.rapi.properties;
 
 public class LossRateProperty extends DelayProperty
 {
+	private static final long serialVersionUID = 9061980707905872247L;
+	
 	/**
 	 * @param lossRateInPercentage Minimum loss probability between 0 and 100
 	 */
@@ -19,6 +19,8 @@ package net.rapi.properties;
 
 public abstract class MinMaxProperty extends NonFunctionalRequirementsProperty
 {
+	private static final long serialVersionUID = 1028001033949300253L;
+	
 	protected static final int UNDEFINED = -1;
 	private static final double SLA_FAILURE_PROBABILITY = 0.01;
 
@@ -110,6 +112,7 @@ public abstract class MinMaxProperty extends NonFunctionalRequirementsProperty
 				// set new values only if all is fine
 				min = newMin;
 				max = newMax;
+				hash = 0;
 			}
 		}
 		
@@ -118,6 +121,42 @@ public abstract class MinMaxProperty extends NonFunctionalRequirementsProperty
 	
 	public abstract Property create(int min, int max, double variance);
 	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(obj == null) return false;
+		if(obj == this) return true;
+		
+		if(obj.getClass().equals(getClass())) {
+			MinMaxProperty prop = (MinMaxProperty) obj;
+			
+			return (min == prop.min) && (max == prop.max) && (Double.compare(getVariance(), prop.getVariance()) == 0);
+		} else {
+			return false;
+		}
+	}
+	
+	/**
+	 * The value is cached until the property is modified via {@link #fuse}.
+	 */
+	@Override
+	public int hashCode()
+	{
+		int res = hash;
+		
+		if(res == 0) {
+			long varianceBits = Double.doubleToLongBits(getVariance());
+			
+			res = getClass().hashCode();
+			res = 31 *res +min;
+			res = 31 *res +max;
+			res = 31 *res +(int)(varianceBits ^ (varianceBits >>> 32));
+			hash = res;
+		}
+		
+		return res;
+	}
+	
 	public abstract String getUnit();
 	
 	@Override
@@ -149,4 +188,7 @@ public abstract class MinMaxProperty extends NonFunctionalRequirementsProperty
 	private int min;
 	private int max;
 	private double variance;
+	
+	/* cached hash code; zero if not computed yet */
+	private transient int hash;
 }
@@ -0,0 +1,213 @@
+/******************************************************************************
+ * Recursive API
+ * Copyright 2013 Integrated Communication Systems Group, TU Ilmenau.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package net.rapi.properties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.rapi.Description;
+import net.rapi.ImmutableDescription;
+
+
+/**
+ * Applies {@link NonFunctionalRequirementsProperty#deriveRequirements} and
+ * {@link NonFunctionalRequirementsProperty#removeCapabilities} to all
+ * properties of a description in one pass. Results are cached per pair of
+ * descriptions. Thus, layers of a recursive stack setting up connections
+ * with the same requirements do not have to recompute them.
+ *
+ * The cache is bounded and evicts the least recently used results.
+ * Failed negotiations are not cached. The class is thread-safe.
+ */
+public class NegotiationEngine
+{
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+
+	public NegotiationEngine()
+	{
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param cacheSize Maximum number of cached results (> 0)
+	 */
+	public NegotiationEngine(final int cacheSize)
+	{
+		if(cacheSize <= 0) throw new IllegalArgumentException(this.getClass() +" - Invalid cache size " +cacheSize);
+
+		cache = new LinkedHashMap<Key, ImmutableDescription>(16, 0.75f, true) {
+			private static final long serialVersionUID = 8720937610454587418L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, ImmutableDescription> eldest)
+			{
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Derives the requirements for a connection through an entity with the
+	 * given capabilities. Each non-functional requirement is processed by the
+	 * capability property of the same class. Requirements without such a
+	 * capability and functional requirements are kept.
+	 *
+	 * @param capabilities Capabilities of the entity ({@code null} if none)
+	 * @param requirements Requirements for the connection ({@code null} if none)
+	 * @return Minimal requirements for a connection through the entity ({@code != null})
+	 * @throws PropertyException If the capabilities do not satisfy the requirements
+	 */
+	public ImmutableDescription deriveRequirements(Description capabilities, Description requirements) throws PropertyException
+	{
+		return negotiate(capabilities, requirements, true);
+	}
+
+	/**
+	 * Removes the capabilities of a part of a connection from the requirements.
+	 * Each non-functional requirement is processed with the capability property
+	 * of the same class. Requirements without such a capability and functional
+	 * requirements are kept.
+	 *
+	 * @param requirements Requirements for the connection ({@code null} if none)
+	 * @param capabilities Capabilities of a part of the connection ({@code null} if none)
+	 * @return Remaining requirements for the rest of the connection ({@code != null})
+	 * @throws PropertyException If the capabilities conflict with the requirements
+	 */
+	public ImmutableDescription removeCapabilities(Description requirements, Description capabilities) throws PropertyException
+	{
+		return negotiate(capabilities, requirements, false);
+	}
+
+	private ImmutableDescription negotiate(Description capabilities, Description requirements, boolean derive) throws PropertyException
+	{
+		if(capabilities == null) capabilities = ImmutableDescription.EMPTY;
+		if(requirements == null) requirements = ImmutableDescription.EMPTY;
+
+		// lookup with the original descriptions in order to avoid copying them
+		Key key = new Key(capabilities, requirements, derive);
+		ImmutableDescription result;
+
+		synchronized (cache) {
+			result = cache.get(key);
+		}
+
+		if(result != null) {
+			hits.incrementAndGet();
+			return result;
+		}
+
+		misses.incrementAndGet();
+		ImmutableDescription.Builder builder = ImmutableDescription.builder();
+
+		for(Property requirement : requirements) {
+			Property capability = capabilities.get(requirement.getClass());
+
+			if((requirement instanceof NonFunctionalRequirementsProperty) && (capability instanceof NonFunctionalRequirementsProperty)) {
+				if(derive) {
+					builder.set(((NonFunctionalRequirementsProperty) capability).deriveRequirements(requirement));
+				} else {
+					builder.set(((NonFunctionalRequirementsProperty) requirement).removeCapabilities(capability));
+				}
+			} else {
+				builder.set(requirement);
+			}
+		}
+
+		result = builder.build();
+
+		// store immutable copies since the caller might modify its descriptions
+		key = new Key(ImmutableDescription.of(capabilities), ImmutableDescription.of(requirements), derive);
+		synchronized (cache) {
+			cache.put(key, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return Number of requests answered from cache
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of requests, which required a computation
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void clear()
+	{
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Cache key for a pair of descriptions and the type of operation.
+	 */
+	private static class Key
+	{
+		public Key(Description capabilities, Description requirements, boolean derive)
+		{
+			this.capabilities = capabilities;
+			this.requirements = requirements;
+			this.derive = derive;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hash = 31 *capabilities.hashCode() +requirements.hashCode();
+
+			if(derive) return hash;
+			else return ~hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if(obj == this) return true;
+
+			if(obj instanceof Key) {
+				Key other = (Key) obj;
+
+				return (derive == other.derive) && capabilities.equals(other.capabilities) && requirements.equals(other.requirements);
+			} else {
+				return false;
+			}
+		}
+
+		private final Description capabilities;
+		private final Description requirements;
+		private final boolean derive;
+	}
+
+	private final LinkedHashMap<Key, ImmutableDescription> cache;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+}
@@ -18,6 +18,8 @@ package net.rapi.properties;
 
 public abstract class NonFunctionalRequirementsProperty extends AbstractProperty
 {
+	private static final long serialVersionUID = 1963687430110339021L;
+	
 	/**
 	 * This object represents the capabilities. The parameter property represents the requirement.
 	 * The result is the minimal requirement for a connection through this link suitable by the capabilities and satisfying the requirements.
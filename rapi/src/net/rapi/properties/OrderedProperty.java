@@ -30,11 +30,27 @@ public class OrderedProperty extends AbstractProperty
 		return ordered;
 	}
 
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(super.equals(obj)) {
+			return ordered == ((OrderedProperty) obj).ordered;
+		} else {
+			return false;
+		}
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return 31 *super.hashCode() +(ordered ? 1 : 0);
+	}
+	
 	@Override
 	public String getPropertyValues()
 	{
 		return Boolean.toString(ordered);
 	}
 	
-	private boolean ordered;
+	private final boolean ordered;
 }
@@ -18,6 +18,8 @@ package net.rapi.properties;
 
 public class PriorityProperty extends NonFunctionalRequirementsProperty
 {
+	private static final long serialVersionUID = -5639832600040562283L;
+	
 	public PriorityProperty(int priority)
 	{
 		this.priority = priority;
@@ -43,11 +45,27 @@ public class PriorityProperty extends NonFunctionalRequirementsProperty
 		return priority == 0;
 	}
 	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(super.equals(obj)) {
+			return priority == ((PriorityProperty) obj).priority;
+		} else {
+			return false;
+		}
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return 31 *super.hashCode() +priority;
+	}
+	
 	@Override
 	public String getPropertyValues()
 	{
 		return Integer.toString(priority);
 	}
 	
-	private int priority;
+	private final int priority;
 }